@@ -0,0 +1,119 @@
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import provided_classes.KVStore;
+import provided_classes.Serializer;
+import provided_classes.VersionList;
+
+import java.util.Arrays;
+
+/**
+ * Version list whose representation grows with the history depth of its key, migrating in place on append:
+ * <ul>
+ *     <li>one version: held inline in two fields, no arrays at all</li>
+ *     <li>up to 'indexThreshold' versions: small parallel arrays, searched linearly from the newest end</li>
+ *     <li>deeper histories: the same arrays grown by doubling and searched by binary search</li>
+ * </ul>
+ * Most keys in a skewed workload stay in the first two stages, while hot keys get logarithmic lookups.
+ */
+public class BackedAdaptiveVersionList<P> implements VersionList<P>, Serializer<P> {
+    // Shared by all lists: an ObjectMapper per list would outweigh the versions of most keys
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final KVStore store;
+    private final int indexThreshold;
+
+    // Inline stage
+    private long inlineTimestamp;
+    private P inlinePayload;
+
+    // Array stages, ordered oldest first
+    private long[] timestamps;
+    private Object[] payloads;
+    private int count;
+
+    public BackedAdaptiveVersionList(KVStore store, int indexThreshold) {
+        this.store = store;
+        this.indexThreshold = indexThreshold;
+    }
+
+    @Override
+    public void append(P p, long timestamp) {
+        if (count == 0) {
+            inlineTimestamp = timestamp;
+            inlinePayload = p;
+        } else {
+            if (count == 1) {
+                timestamps = new long[2];
+                payloads = new Object[2];
+                timestamps[0] = inlineTimestamp;
+                payloads[0] = inlinePayload;
+                inlinePayload = null;
+            } else if (count == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, count * 2);
+                payloads = Arrays.copyOf(payloads, count * 2);
+            }
+            timestamps[count] = timestamp;
+            payloads[count] = p;
+        }
+        count++;
+        store.put(String.valueOf(timestamp), serialize(p));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public P findVisible(long timestamp) {
+        if (count == 0) {
+            return null;
+        }
+        if (count == 1) {
+            return inlineTimestamp <= timestamp ? inlinePayload : null;
+        }
+        if (count <= indexThreshold) {
+            for (int i = count - 1; i >= 0; i--) {
+                if (timestamps[i] <= timestamp) {
+                    return (P) payloads[i];
+                }
+            }
+            return null;
+        }
+        // Newest version with timestamp <= requested timestamp
+        int lo = 0;
+        int hi = count - 1;
+        int found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (timestamps[mid] <= timestamp) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found >= 0 ? (P) payloads[found] : null;
+    }
+
+    @Override
+    public String serialize(P p) {
+        if (p != null) {
+            try {
+                return OBJECT_MAPPER.writeValueAsString(p);
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return "";
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public P deSerialize(String serializedT) {
+        if (serializedT != null && !serializedT.isEmpty()) {
+            try {
+                return OBJECT_MAPPER.readValue(serializedT, (Class<P>) Object.class);
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return null;
+    }
+}
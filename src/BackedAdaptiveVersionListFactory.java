@@ -0,0 +1,24 @@
+import provided_classes.KVStore;
+import provided_classes.Serializer;
+import provided_classes.VersionList;
+import provided_classes.VersionListFactory;
+
+public class BackedAdaptiveVersionListFactory<P> implements VersionListFactory<P> {
+    private final int indexThreshold;
+
+    public BackedAdaptiveVersionListFactory() {
+        this(8);
+    }
+
+    /**
+     * @param indexThreshold history depth above which lists switch from linear scans to binary search
+     */
+    public BackedAdaptiveVersionListFactory(int indexThreshold) {
+        this.indexThreshold = indexThreshold;
+    }
+
+    @Override
+    public VersionList<P> create(KVStore store, Serializer<P> serializer) {
+        return new BackedAdaptiveVersionList<>(store, indexThreshold);
+    }
+}
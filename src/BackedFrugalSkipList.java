@@ -7,12 +7,11 @@ import provided_classes.Serializer;
 public class BackedFrugalSkipList<P> implements VersionList<P>, Serializer<P> {
     private final FrugalSkipList<P> list;
     private final KVStore store;
-    private final ObjectMapper objectMapper;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
     public BackedFrugalSkipList(KVStore store) {
         this.store = store;
         this.list = new FrugalSkipList<>();
-        this.objectMapper = new ObjectMapper();
     }
 
     @Override
@@ -23,18 +22,16 @@ public class BackedFrugalSkipList<P> implements VersionList<P>, Serializer<P> {
 
     @Override
     public P findVisible(long timestamp) {
-        P result = list.findVisible(timestamp);
-        if (result != null) {
-            return deSerialize(store.get(String.valueOf(timestamp)));
-        }
-        return null;
+        // The skip list already holds the payload of the visible version; the store key is that
+        // version's own timestamp, not the query timestamp, so re-reading it here would be wrong
+        return list.findVisible(timestamp);
     }
 
     @Override
     public String serialize(P p) {
         if (p != null) {
             try {
-                return objectMapper.writeValueAsString(p);
+                return OBJECT_MAPPER.writeValueAsString(p);
             } catch (JsonProcessingException e) {
                 throw new RuntimeException(e);
             }
@@ -46,7 +43,7 @@ public class BackedFrugalSkipList<P> implements VersionList<P>, Serializer<P> {
     public P deSerialize(String serializedT) {
         if (serializedT != null && !serializedT.isEmpty()) {
             try {
-                return objectMapper.readValue(serializedT, (Class<P>) Object.class);
+                return OBJECT_MAPPER.readValue(serializedT, (Class<P>) Object.class);
             } catch (JsonProcessingException e) {
                 throw new RuntimeException(e);
             }
@@ -1,30 +1,113 @@
 import provided_classes.KVStore;
 import provided_classes.MultiVersionMap;
+import provided_classes.Serializer;
 import provided_classes.VersionList;
 import provided_classes.VersionListFactory;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
 
+/**
+ * MultiVersionMap keeping one VersionList per key in a TreeMap.
+ * <p>
+ * With a budget of resident versions (see the tiered constructor) only the most recently used version
+ * lists stay resident. Cold lists are encoded with {@link VersionListCodec} and parked in the KVStore under
+ * {@code "vl:" + key}, leaving a small stub in the key index. A {@code get} or {@code append} on a cold
+ * key loads the list back (LRU admission); scans read cold lists in place, prefetching ahead of the
+ * cursor, and do not admit them so a full snapshot cannot flush the working set.
+ * <p>
+ * Secondary indexes over payload fields can be declared with {@link #addIndex}; they are kept on the heap
+ * and answer "which keys had this value at time t" without reading version lists or payloads.
+ */
 public class BackedSimpleMVM<K extends Comparable<? super K>, P> implements MultiVersionMap<K, P> {
-    private final TreeMap<K, VersionList<P>> treeMap;
+    private static final String COLD_KEY_PREFIX = "vl:";
+    private static final int PREFETCH_DEPTH = 16;
+    private static final int PREFETCH_THREADS = 4;
+
+    private final TreeMap<K, KeySlot<P>> treeMap;
     private final VersionListFactory<P> versionListFactory;
     private final KVStore store;
     private long versionCounter;
+    private final Map<String, SecondaryIndex<K, P, ?>> indexes = new LinkedHashMap<>();
+
+    // Tiering state, only used when tiered == true
+    private final boolean tiered;
+    private final Serializer<P> serializer;
+    private final long maxResidentVersions;
+    private final LinkedHashMap<K, KeySlot<P>> residentSlots;
+    private final ReplayGuardStore listStore;
+    private long residentVersions;
+
+    private static class KeySlot<P> {
+        VersionList<P> list;
+        long firstVersion;
+        int versionCount;
+        // Versions of this key and their payloads, kept while resident so the list can be encoded
+        // on eviction in one pass, whatever VersionList the factory built
+        long[] versions;
+        Object[] payloads;
+        // True if the list changed since it was last written to the store
+        boolean dirty;
+
+        boolean isResident() {
+            return list != null;
+        }
+    }
 
     public BackedSimpleMVM(VersionListFactory<P> versionListFactory, KVStore store) {
         this.treeMap = new TreeMap<>();
         this.versionListFactory = versionListFactory;
         this.store = store;
         this.versionCounter = 1;
+        this.tiered = false;
+        this.serializer = null;
+        this.maxResidentVersions = Long.MAX_VALUE;
+        this.residentSlots = null;
+        this.listStore = null;
+    }
+
+    /**
+     * Creates a heap-budgeted map. The budget counts versions, not bytes. Besides its payload and the node its
+     * VersionList keeps for it, a resident version costs 12 bytes (16 without compressed references) in its key
+     * slot, which keeps the versions and payload references so the list can be encoded on eviction; the slot
+     * arrays grow by doubling, so up to twice that just after a resize. Secondary index entries are not counted.
+     * @param serializer used to encode payloads of evicted version lists
+     * @param maxResidentVersions upper bound for the number of versions held on the heap, summed over all
+     *                            resident version lists (the most recently used list is always kept)
+     */
+    public BackedSimpleMVM(VersionListFactory<P> versionListFactory, KVStore store,
+                           Serializer<P> serializer, long maxResidentVersions) {
+        if (maxResidentVersions < 1) {
+            throw new IllegalArgumentException("maxResidentVersions must be positive: " + maxResidentVersions);
+        }
+        this.treeMap = new TreeMap<>();
+        this.versionListFactory = versionListFactory;
+        this.store = store;
+        this.versionCounter = 1;
+        this.tiered = true;
+        this.serializer = Objects.requireNonNull(serializer, "serializer");
+        this.maxResidentVersions = maxResidentVersions;
+        this.residentSlots = new LinkedHashMap<>(16, 0.75f, true);
+        this.listStore = new ReplayGuardStore(store);
     }
 
     @Override
     public Map.Entry<K, P> get(K k, long t) {
-        VersionList<P> versionList = treeMap.get(k);
-        if (versionList == null) {
+        KeySlot<P> slot = treeMap.get(k);
+        if (slot == null || slot.firstVersion > t) {
             return null;
         }
-        P payload = versionList.findVisible(t);
+        if (tiered) {
+            if (slot.isResident()) {
+                residentSlots.get(k);
+            } else {
+                load(k, slot);
+            }
+        }
+        P payload = slot.list.findVisible(t);
         if (payload == null) {
             return null;
         }
@@ -33,43 +116,244 @@ public class BackedSimpleMVM<K extends Comparable<? super K>, P> implements Mult
 
     @Override
     public long append(K k, P p) {
-        VersionList<P> versionList = treeMap.get(k);
-        if (versionList == null) {
-            versionList = versionListFactory.create(store, null);
-            treeMap.put(k, versionList);
-        }
+        KeySlot<P> slot = treeMap.get(k);
         long version = versionCounter++;
-        versionList.append(p, version);
+        if (slot == null) {
+            slot = new KeySlot<>();
+            slot.list = versionListFactory.create(tiered ? listStore : store, serializer);
+            slot.firstVersion = version;
+            treeMap.put(k, slot);
+            if (tiered) {
+                slot.versions = new long[2];
+                slot.payloads = new Object[2];
+                residentSlots.put(k, slot);
+            }
+        } else if (tiered) {
+            if (slot.isResident()) {
+                residentSlots.get(k);
+            } else {
+                load(k, slot);
+            }
+        }
+        slot.list.append(p, version);
+        slot.versionCount++;
+        if (tiered) {
+            if (slot.versionCount > slot.versions.length) {
+                slot.versions = Arrays.copyOf(slot.versions, slot.versions.length * 2);
+                slot.payloads = Arrays.copyOf(slot.payloads, slot.payloads.length * 2);
+            }
+            slot.versions[slot.versionCount - 1] = version;
+            slot.payloads[slot.versionCount - 1] = p;
+            slot.dirty = true;
+            residentVersions++;
+            evictIfOverBudget(slot);
+        }
+        for (SecondaryIndex<K, P, ?> index : indexes.values()) {
+            index.onAppend(k, p, version);
+        }
         return version;
     }
 
     @Override
     public Iterator<Map.Entry<K, P>> rangeSnapshot(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive, long timestamp) {
-        NavigableMap<K, VersionList<P>> subMap = treeMap.subMap(fromKey, fromInclusive, toKey, toInclusive);
-        List<Map.Entry<K, P>> result = new ArrayList<>();
-        
-        for (Map.Entry<K, VersionList<P>> entry : subMap.entrySet()) {
-            P payload = entry.getValue().findVisible(timestamp);
-            if (payload != null) {
-                result.add(new AbstractMap.SimpleEntry<>(entry.getKey(), payload));
-            }
-        }
-        
-        return result.iterator();
+        NavigableMap<K, KeySlot<P>> subMap = treeMap.subMap(fromKey, fromInclusive, toKey, toInclusive);
+        return collectVisible(subMap, timestamp).iterator();
     }
 
     @Override
     public Iterator<Map.Entry<K, P>> snapshot(long timestamp) {
+        return collectVisible(treeMap, timestamp).iterator();
+    }
+
+    /**
+     * Declares a secondary index on a payload field. Indexes must be declared before the first append.
+     * <p>
+     * An index keeps one entry per (key, value, validity interval) on the heap for the life of the map and
+     * never drops closed intervals, so its size grows with the history. This holds for a tiered map too: the
+     * entries of evicted keys stay resident and are not counted against the resident-version budget.
+     * @param field name used to refer to the index in lookups
+     * @param extractor returns the indexed value of a payload, or null if the payload is not indexed
+     */
+    public <V extends Comparable<? super V>> void addIndex(String field, Function<? super P, ? extends V> extractor) {
+        if (versionCounter > 1) {
+            throw new IllegalStateException("Indexes must be declared before the first append");
+        }
+        if (indexes.containsKey(field)) {
+            throw new IllegalArgumentException("An index on field " + field + " already exists");
+        }
+        indexes.put(field, new SecondaryIndex<K, P, V>(extractor));
+    }
+
+    /**
+     * @return the keys whose visible version at time t has the given value in 'field', in key-order
+     */
+    public <V extends Comparable<? super V>> Iterator<K> indexLookup(String field, V value, long t) {
+        return this.<V>index(field).lookup(value, t).iterator();
+    }
+
+    /**
+     * @return the keys whose visible version at time t has a value in 'field' between fromValue
+     * (inclusive, iff fromInclusive) and toValue (inclusive iff toInclusive), in key-order
+     */
+    public <V extends Comparable<? super V>> Iterator<K> indexRangeScan(String field, V fromValue, boolean fromInclusive,
+                                                                       V toValue, boolean toInclusive, long t) {
+        return this.<V>index(field).rangeScan(fromValue, fromInclusive, toValue, toInclusive, t).iterator();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V extends Comparable<? super V>> SecondaryIndex<K, P, V> index(String field) {
+        SecondaryIndex<K, P, ?> index = indexes.get(field);
+        if (index == null) {
+            throw new IllegalArgumentException("No index on field " + field);
+        }
+        return (SecondaryIndex<K, P, V>) index;
+    }
+
+    /**
+     * @return whether the version list of k is on the heap, so a get need not load it from the store
+     */
+    public boolean isResident(K k) {
+        KeySlot<P> slot = treeMap.get(k);
+        return slot != null && slot.isResident();
+    }
+
+    public int residentKeys() {
+        return tiered ? residentSlots.size() : treeMap.size();
+    }
+
+    public long residentVersions() {
+        if (tiered) {
+            return residentVersions;
+        }
+        long total = 0;
+        for (KeySlot<P> slot : treeMap.values()) {
+            total += slot.versionCount;
+        }
+        return total;
+    }
+
+    private List<Map.Entry<K, P>> collectVisible(NavigableMap<K, KeySlot<P>> range, long timestamp) {
         List<Map.Entry<K, P>> result = new ArrayList<>();
-        
-        for (Map.Entry<K, VersionList<P>> entry : treeMap.entrySet()) {
-            P payload = entry.getValue().findVisible(timestamp);
+        Deque<CompletableFuture<String>> prefetched = new ArrayDeque<>();
+        Iterator<Map.Entry<K, KeySlot<P>>> prefetchCursor = tiered ? range.entrySet().iterator() : null;
+
+        for (Map.Entry<K, KeySlot<P>> entry : range.entrySet()) {
+            KeySlot<P> slot = entry.getValue();
+            if (slot.firstVersion > timestamp) {
+                continue;
+            }
+            P payload;
+            if (slot.isResident()) {
+                payload = slot.list.findVisible(timestamp);
+            } else {
+                // Keep up to PREFETCH_DEPTH cold lists in flight ahead of the scan position
+                while (prefetched.size() < PREFETCH_DEPTH && prefetchCursor.hasNext()) {
+                    Map.Entry<K, KeySlot<P>> ahead = prefetchCursor.next();
+                    if (!ahead.getValue().isResident() && ahead.getValue().firstVersion <= timestamp) {
+                        String coldKey = COLD_KEY_PREFIX + ahead.getKey();
+                        prefetched.add(CompletableFuture.supplyAsync(() -> store.get(coldKey), PrefetchPool.EXECUTOR));
+                    }
+                }
+                String serialized = VersionListCodec.findVisible(prefetched.poll().join(), timestamp);
+                payload = serialized == null ? null : serializer.deSerialize(serialized);
+            }
             if (payload != null) {
                 result.add(new AbstractMap.SimpleEntry<>(entry.getKey(), payload));
             }
         }
-        
-        return result.iterator();
+
+        return result;
     }
-}
 
+    private void load(K k, KeySlot<P> slot) {
+        String encoded = store.get(COLD_KEY_PREFIX + k);
+        if (encoded == null) {
+            throw new IllegalStateException("Cold version list for key " + k + " is missing from the store");
+        }
+        long[] versions = VersionListCodec.decodeVersions(encoded);
+        String[] payloads = VersionListCodec.decodePayloads(encoded);
+        Object[] residentPayloads = new Object[Math.max(2, versions.length)];
+        VersionList<P> list = versionListFactory.create(listStore, serializer);
+        // The payloads are already persisted, so suppress the write-through while replaying
+        listStore.replaying = true;
+        try {
+            for (int i = 0; i < versions.length; i++) {
+                P payload = serializer.deSerialize(payloads[i]);
+                residentPayloads[i] = payload;
+                list.append(payload, versions[i]);
+            }
+        } finally {
+            listStore.replaying = false;
+        }
+        slot.list = list;
+        slot.versions = versions.length > 0 ? versions : new long[2];
+        slot.payloads = residentPayloads;
+        slot.versionCount = versions.length;
+        slot.dirty = false;
+        residentSlots.put(k, slot);
+        residentVersions += versions.length;
+        evictIfOverBudget(slot);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void evictIfOverBudget(KeySlot<P> pinned) {
+        Iterator<Map.Entry<K, KeySlot<P>>> lru = residentSlots.entrySet().iterator();
+        while (residentVersions > maxResidentVersions && lru.hasNext()) {
+            Map.Entry<K, KeySlot<P>> eldest = lru.next();
+            KeySlot<P> slot = eldest.getValue();
+            if (slot == pinned) {
+                continue;
+            }
+            if (slot.dirty) {
+                List<String> payloads = new ArrayList<>(slot.versionCount);
+                for (int i = 0; i < slot.versionCount; i++) {
+                    payloads.add(serializer.serialize((P) slot.payloads[i]));
+                }
+                store.put(COLD_KEY_PREFIX + eldest.getKey(), VersionListCodec.encode(slot.versions, slot.versionCount, payloads));
+            }
+            residentVersions -= slot.versionCount;
+            slot.list = null;
+            slot.versions = null;
+            slot.payloads = null;
+            slot.dirty = false;
+            lru.remove();
+        }
+    }
+
+    /**
+     * Daemon threads for cold-list prefetching, shared by all tiered maps and started on first use,
+     * so maps need no close() and short-lived maps do not leave threads behind.
+     */
+    private static class PrefetchPool {
+        static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(PREFETCH_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "mvm-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Store handed to the version lists of a tiered map. Puts are dropped while a cold list is
+     * replayed into a fresh VersionList, because its payloads were persisted on the original append.
+     */
+    private static class ReplayGuardStore implements KVStore {
+        private final KVStore delegate;
+        boolean replaying;
+
+        ReplayGuardStore(KVStore delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void put(String storeKey, String storeValue) {
+            if (!replaying) {
+                delegate.put(storeKey, storeValue);
+            }
+        }
+
+        @Override
+        public String get(String storeKey) {
+            return delegate.get(storeKey);
+        }
+    }
+}
@@ -7,12 +7,11 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 public class BackedVLinkedList <P> implements VersionList<P>, Serializer<P>{
     private final VLinkedList<P> list;
     private final KVStore store;
-    private final ObjectMapper objectMapper;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
     public BackedVLinkedList(KVStore store) {
         this.store = store;
         this.list = new VLinkedList<>();
-        this.objectMapper = new ObjectMapper();
     }
 
     @Override
@@ -32,7 +31,7 @@ public class BackedVLinkedList <P> implements VersionList<P>, Serializer<P>{
     public String serialize(P p) {
         if (p != null) {
             try {
-                return objectMapper.writeValueAsString(p);
+                return OBJECT_MAPPER.writeValueAsString(p);
             } catch (JsonProcessingException e) {
                 throw new RuntimeException(e);
             }
@@ -44,7 +43,7 @@ public class BackedVLinkedList <P> implements VersionList<P>, Serializer<P>{
     public P deSerialize(String serializedT) {
         if (serializedT != null && !serializedT.isEmpty()) {
             try {
-                return objectMapper.readValue(serializedT, (Class<P>) Object.class);
+                return OBJECT_MAPPER.readValue(serializedT, (Class<P>) Object.class);
             } catch (JsonProcessingException e) {
                 throw new RuntimeException(e);
             }
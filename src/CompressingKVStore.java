@@ -0,0 +1,337 @@
+import provided_classes.FlushableKVStore;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * KVStore decorator that compresses values with DEFLATE and a shared preset dictionary, so the small,
+ * repetitive serialized payloads written by the version lists do not each carry the full redundant text.
+ * <p>
+ * The first {@code sampleSize} values are stored as they are and sampled; then a dictionary of frequent
+ * substrings is trained from the samples and every following value is compressed with it. Dictionaries
+ * are versioned and kept in the underlying store ({@code __dict:<id>}, the current id under
+ * {@code __dict:current}), so values written with an older dictionary stay readable after retraining and
+ * a new instance over the same store picks up the current dictionary. Reads decompress transparently.
+ * <p>
+ * Stored format: compressed values are {@code \u0001<dictId>:<base64 deflate>}; values that are not worth
+ * compressing are stored unchanged, prefixed with {@code \u0002} if they happen to start with either marker.
+ */
+public class CompressingKVStore implements FlushableKVStore {
+    private static final String DICT_PREFIX = "__dict:";
+    private static final String CURRENT_DICT_KEY = DICT_PREFIX + "current";
+    private static final char COMPRESSED_MARKER = '\u0001';
+    private static final char ESCAPE_MARKER = '\u0002';
+    private static final int GRAM_LENGTH = 8;
+
+    private final FlushableKVStore delegate;
+    private final int sampleSize;
+    private final int dictionarySize;
+    private final List<String> samples = new ArrayList<>();
+    private final Map<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+    private volatile int currentDictId;
+    // Set while the sampled values are being trained into the first dictionary, so only one thread trains it
+    private boolean training;
+
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+    private final AtomicLong compressedValues = new AtomicLong();
+    private final AtomicLong totalValues = new AtomicLong();
+
+    private final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_COMPRESSION, true));
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    public CompressingKVStore(FlushableKVStore delegate) {
+        this(delegate, 1_000, 16 * 1024);
+    }
+
+    /**
+     * @param sampleSize     number of values sampled before the first dictionary is trained
+     * @param dictionarySize maximum dictionary size in bytes (DEFLATE only looks back 32 KB)
+     */
+    public CompressingKVStore(FlushableKVStore delegate, int sampleSize, int dictionarySize) {
+        if (dictionarySize < 1 || dictionarySize > 32 * 1024) {
+            throw new IllegalArgumentException("dictionarySize must be in [1, 32768]: " + dictionarySize);
+        }
+        this.delegate = delegate;
+        this.sampleSize = sampleSize;
+        this.dictionarySize = dictionarySize;
+        String current = delegate.get(CURRENT_DICT_KEY);
+        if (current != null) {
+            currentDictId = Integer.parseInt(current);
+        }
+    }
+
+    @Override
+    public void put(String storeKey, String storeValue) {
+        if (currentDictId == 0) {
+            sample(storeValue);
+        }
+        byte[] raw = storeValue.getBytes(StandardCharsets.UTF_8);
+        String stored = encode(storeValue, raw);
+        rawBytes.addAndGet(raw.length);
+        storedBytes.addAndGet(stored.length() == storeValue.length() ? raw.length : stored.getBytes(StandardCharsets.UTF_8).length);
+        totalValues.incrementAndGet();
+        delegate.put(storeKey, stored);
+    }
+
+    @Override
+    public String get(String storeKey) {
+        String stored = delegate.get(storeKey);
+        if (stored == null || stored.isEmpty()) {
+            return stored;
+        }
+        char marker = stored.charAt(0);
+        if (marker == ESCAPE_MARKER) {
+            return stored.substring(1);
+        }
+        if (marker != COMPRESSED_MARKER) {
+            return stored;
+        }
+        int colon = stored.indexOf(':');
+        int dictId = Integer.parseInt(stored, 1, colon, 36);
+        byte[] compressed = Base64.getDecoder().decode(stored.substring(colon + 1));
+        return inflate(compressed, dictionary(dictId));
+    }
+
+    @Override
+    public void flushDB() {
+        delegate.flushDB();
+        synchronized (samples) {
+            samples.clear();
+            dictionaries.clear();
+            currentDictId = 0;
+        }
+        rawBytes.set(0);
+        storedBytes.set(0);
+        compressedValues.set(0);
+        totalValues.set(0);
+    }
+
+    /**
+     * Trains a new dictionary from the given sample values, stores it and makes it the current one.
+     * @return the id of the new dictionary
+     */
+    public int train(List<String> sampleValues) {
+        byte[] dictionary = buildDictionary(sampleValues, dictionarySize);
+        synchronized (samples) {
+            int id = currentDictId + 1;
+            delegate.put(DICT_PREFIX + id, Base64.getEncoder().encodeToString(dictionary));
+            delegate.put(CURRENT_DICT_KEY, String.valueOf(id));
+            dictionaries.put(id, dictionary);
+            currentDictId = id;
+            samples.clear();
+            return id;
+        }
+    }
+
+    public int currentDictionaryId() {
+        return currentDictId;
+    }
+
+    /**
+     * @return UTF-8 bytes of all values passed to put, divided by the bytes actually stored for them
+     */
+    public double compressionRatio() {
+        long stored = storedBytes.get();
+        return stored == 0 ? 1.0 : (double) rawBytes.get() / stored;
+    }
+
+    public long rawBytes() {
+        return rawBytes.get();
+    }
+
+    public long storedBytes() {
+        return storedBytes.get();
+    }
+
+    public long compressedValues() {
+        return compressedValues.get();
+    }
+
+    public long totalValues() {
+        return totalValues.get();
+    }
+
+    private void sample(String value) {
+        List<String> toTrain;
+        synchronized (samples) {
+            if (currentDictId != 0 || training) {
+                return;
+            }
+            samples.add(value);
+            if (samples.size() < sampleSize) {
+                return;
+            }
+            training = true;
+            toTrain = new ArrayList<>(samples);
+        }
+        try {
+            train(toTrain);
+        } finally {
+            synchronized (samples) {
+                training = false;
+            }
+        }
+    }
+
+    private String encode(String value, byte[] raw) {
+        int dictId = currentDictId;
+        if (dictId != 0) {
+            byte[] compressed = deflate(raw, dictionary(dictId));
+            String encoded = COMPRESSED_MARKER + Integer.toString(dictId, 36) + ':' + Base64.getEncoder().encodeToString(compressed);
+            if (encoded.length() < raw.length) {
+                compressedValues.incrementAndGet();
+                return encoded;
+            }
+        }
+        if (!value.isEmpty() && (value.charAt(0) == COMPRESSED_MARKER || value.charAt(0) == ESCAPE_MARKER)) {
+            return ESCAPE_MARKER + value;
+        }
+        return value;
+    }
+
+    private byte[] dictionary(int id) {
+        return dictionaries.computeIfAbsent(id, key -> {
+            String encoded = delegate.get(DICT_PREFIX + key);
+            if (encoded == null) {
+                throw new IllegalStateException("Compression dictionary " + key + " is missing from the store");
+            }
+            return Base64.getDecoder().decode(encoded);
+        });
+    }
+
+    private byte[] deflate(byte[] input, byte[] dictionary) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setDictionary(dictionary);
+        deflater.setInput(input);
+        deflater.finish();
+        byte[] buffer = new byte[input.length + 64];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private String inflate(byte[] input, byte[] dictionary) {
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setDictionary(dictionary);
+        inflater.setInput(input);
+        byte[] buffer = new byte[Math.max(64, input.length * 4)];
+        int length = 0;
+        try {
+            while (!inflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int inflated = inflater.inflate(buffer, length, buffer.length - length);
+                if (inflated == 0 && inflater.needsInput()) {
+                    throw new IllegalStateException("Truncated compressed value");
+                }
+                length += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new RuntimeException(e);
+        }
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Builds a dictionary from the substrings that recur across many samples: every position whose
+     * GRAM_LENGTH-byte window occurs in at least a tenth of the samples is marked, maximal runs of marked bytes
+     * become candidate segments, and the segments with the highest (frequency * length) are concatenated.
+     * The most valuable segments go last, as DEFLATE encodes nearer matches more cheaply.
+     */
+    static byte[] buildDictionary(List<String> sampleValues, int maxSize) {
+        // ISO-8859-1 maps bytes 1:1 to chars, so substrings below are byte sequences
+        List<String> byteStrings = new ArrayList<>(sampleValues.size());
+        for (String value : sampleValues) {
+            byteStrings.add(new String(value.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1));
+        }
+
+        Map<String, Integer> gramFrequency = new HashMap<>();
+        for (String s : byteStrings) {
+            Set<String> seen = new HashSet<>();
+            for (int i = 0; i + GRAM_LENGTH <= s.length(); i++) {
+                String gram = s.substring(i, i + GRAM_LENGTH);
+                if (seen.add(gram)) {
+                    gramFrequency.merge(gram, 1, Integer::sum);
+                }
+            }
+        }
+        int threshold = Math.max(2, byteStrings.size() / 10);
+
+        Map<String, Integer> segmentFrequency = new HashMap<>();
+        for (String s : byteStrings) {
+            boolean[] covered = new boolean[s.length()];
+            for (int i = 0; i + GRAM_LENGTH <= s.length(); i++) {
+                if (gramFrequency.get(s.substring(i, i + GRAM_LENGTH)) >= threshold) {
+                    Arrays.fill(covered, i, i + GRAM_LENGTH, true);
+                }
+            }
+            Set<String> seen = new HashSet<>();
+            for (int i = 0; i < s.length(); ) {
+                if (!covered[i]) {
+                    i++;
+                    continue;
+                }
+                int end = i;
+                while (end < s.length() && covered[end]) {
+                    end++;
+                }
+                String segment = s.substring(i, end);
+                if (seen.add(segment)) {
+                    segmentFrequency.merge(segment, 1, Integer::sum);
+                }
+                i = end;
+            }
+        }
+
+        List<Map.Entry<String, Integer>> ranked = new ArrayList<>(segmentFrequency.entrySet());
+        ranked.sort((a, b) -> Long.compare((long) b.getValue() * b.getKey().length(), (long) a.getValue() * a.getKey().length()));
+        List<String> chosen = new ArrayList<>();
+        int size = 0;
+        for (Map.Entry<String, Integer> entry : ranked) {
+            String segment = entry.getKey();
+            if (entry.getValue() < 2 || size + segment.length() > maxSize) {
+                continue;
+            }
+            boolean redundant = false;
+            for (String existing : chosen) {
+                if (existing.contains(segment)) {
+                    redundant = true;
+                    break;
+                }
+            }
+            if (!redundant) {
+                chosen.add(segment);
+                size += segment.length();
+            }
+        }
+
+        StringBuilder dictionary = new StringBuilder(size);
+        for (int i = chosen.size() - 1; i >= 0; i--) {
+            dictionary.append(chosen.get(i));
+        }
+        if (dictionary.length() == 0) {
+            // Nothing recurs; fall back to the tail of the samples so DEFLATE still has some context
+            for (int i = byteStrings.size() - 1; i >= 0 && dictionary.length() < maxSize; i--) {
+                dictionary.insert(0, byteStrings.get(i));
+            }
+            if (dictionary.length() > maxSize) {
+                dictionary.delete(0, dictionary.length() - maxSize);
+            }
+        }
+        return dictionary.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
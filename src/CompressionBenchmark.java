@@ -0,0 +1,109 @@
+import provided_classes.FlushableKVStore;
+import provided_classes.Test;
+import provided_classes.Test.Payload;
+import provided_classes.VersionListFactory;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads a data file into BackedSimpleMVM once over a plain store and once over a {@link CompressingKVStore},
+ * and compares store size, insertion throughput and the throughput of reading every stored version back.
+ * Both configurations first run unreported warm-up passes, so neither is measured on a cold JVM.
+ */
+public class CompressionBenchmark {
+
+    public static void run(String[] args) throws Exception {
+        Options options = Options.parse("compression benchmark", args);
+        String implName = options.get("impl", "BackedVLinkedList");
+        String storeName = options.get("store", "redis");
+        String dataPath = options.get("data", "data/benchmark_data.csv");
+        int sampleSize = options.getInt("sampleSize", 1_000);
+        int dictionarySize = options.getInt("dictionarySize", 16 * 1024);
+        int warmupRuns = options.getInt("warmupRuns", 1);
+        options.rejectUnknown();
+
+        List<Map.Entry<String, Payload>> data = Test.readData(dataPath);
+        if (data.isEmpty()) {
+            System.out.println("No data loaded from " + dataPath);
+            return;
+        }
+        System.out.println("=== Compression benchmark: " + data.size() + " entries from " + dataPath + ", "
+                + implName + " on " + storeName + " store ===\n");
+
+        FlushableKVStore baseStore = storeName.equals("memory") ? new MemoryKVStore() : new JedisKVStore();
+        baseStore.flushDB();
+
+        for (int i = 0; i < warmupRuns; i++) {
+            runOnce(data, implName, baseStore, baseStore, false);
+            baseStore.flushDB();
+            CompressingKVStore warmup = new CompressingKVStore(baseStore, sampleSize, dictionarySize);
+            runOnce(data, implName, warmup, baseStore, false);
+            warmup.flushDB();
+        }
+        System.out.println("Warmup runs: " + warmupRuns + "\n");
+
+        System.out.println("--- Plain store ---");
+        long plainSize = runOnce(data, implName, baseStore, baseStore, true);
+        baseStore.flushDB();
+
+        System.out.println("\n--- Dictionary-compressed store ---");
+        CompressingKVStore compressing = new CompressingKVStore(baseStore, sampleSize, dictionarySize);
+        long compressedSize = runOnce(data, implName, compressing, baseStore, true);
+        System.out.printf("Dictionary id: %d, compressed values: %,d of %,d%n",
+                compressing.currentDictionaryId(), compressing.compressedValues(), compressing.totalValues());
+        System.out.printf("Value bytes: %,d raw -> %,d stored (ratio %.2f)%n",
+                compressing.rawBytes(), compressing.storedBytes(), compressing.compressionRatio());
+        if (plainSize > 0 && compressedSize > 0) {
+            System.out.printf("%nStore size: %,d -> %,d bytes (%.1f%% saved)%n", plainSize, compressedSize,
+                    100.0 * (plainSize - compressedSize) / plainSize);
+        }
+        compressing.flushDB();
+    }
+
+    /**
+     * @return the size reported by the underlying store after loading, or -1 if it cannot report one
+     */
+    private static long runOnce(List<Map.Entry<String, Payload>> data, String implName,
+                                FlushableKVStore store, FlushableKVStore baseStore, boolean verbose) throws Exception {
+        VersionListFactory<Payload> factory = Options.factory(implName);
+        BackedSimpleMVM<String, Payload> mvm = new BackedSimpleMVM<>(factory, store);
+
+        long startInsert = System.nanoTime();
+        long lastVersion = 0;
+        for (Map.Entry<String, Payload> entry : data) {
+            lastVersion = mvm.append(entry.getKey(), entry.getValue());
+        }
+        long insertNanos = System.nanoTime() - startInsert;
+        if (verbose) {
+            System.out.printf("Insertion: %.2f ms (%,.0f appends/s)%n", insertNanos / 1_000_000.0,
+                    data.size() / (insertNanos / 1e9));
+        }
+
+        // Version lists write each payload under its version number; read them all back through the store
+        long startRead = System.nanoTime();
+        long bytes = 0;
+        for (long version = 1; version <= lastVersion; version++) {
+            String value = store.get(String.valueOf(version));
+            if (value != null) {
+                bytes += value.length();
+            }
+        }
+        long readNanos = System.nanoTime() - startRead;
+        if (!verbose) {
+            return -1;
+        }
+        System.out.printf("Read-back: %.2f ms (%,.0f gets/s, %,d chars)%n", readNanos / 1_000_000.0,
+                lastVersion / (readNanos / 1e9), bytes);
+
+        long size = -1;
+        if (baseStore instanceof JedisKVStore jedis) {
+            size = jedis.usedMemory();
+            System.out.printf("Redis used_memory: %,d bytes%n", size);
+        } else if (baseStore instanceof MemoryKVStore memory) {
+            size = memory.storedBytes();
+            System.out.printf("Stored key/value bytes: %,d%n", size);
+        }
+        return size;
+    }
+}
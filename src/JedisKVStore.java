@@ -34,6 +34,20 @@ public class JedisKVStore implements FlushableKVStore {
         }
     }
 
+    /**
+     * @return the memory used by the Redis server in bytes, as reported by INFO memory, or -1 if unavailable
+     */
+    public long usedMemory() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            for (String line : jedis.info("memory").split("\r\n")) {
+                if (line.startsWith("used_memory:")) {
+                    return Long.parseLong(line.substring("used_memory:".length()).trim());
+                }
+            }
+        }
+        return -1;
+    }
+
     public void close() {
         if (jedisPool != null && !jedisPool.isClosed()) {
             jedisPool.close();
@@ -0,0 +1,239 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Blocking client for {@link MVMServer}. Not thread-safe; use one client per thread.
+ * <p>
+ * The plain methods ({@link #get}, {@link #append}, ...) send one request and wait for its response.
+ * For pipelining, queue requests with the {@code send*} methods, call {@link #flush()}, and then read the
+ * responses in the same order with the matching {@code read*} methods. Keep the number of outstanding
+ * requests bounded: the server stops reading from a connection whose responses are not being consumed.
+ */
+public class MVMClient implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final SocketChannel channel;
+    // Write mode: queued, not yet sent requests
+    private ByteBuffer out;
+    // Read mode: received, not yet consumed response bytes
+    private ByteBuffer in;
+
+    public MVMClient(String host, int port) throws IOException {
+        this.channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        this.out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.in = ByteBuffer.allocateDirect(BUFFER_SIZE).flip();
+    }
+
+    public String get(String key, long t) throws IOException {
+        sendGet(key, t);
+        flush();
+        return readGet();
+    }
+
+    public long append(String key, String payload) throws IOException {
+        sendAppend(key, payload);
+        flush();
+        return readAppend();
+    }
+
+    public List<String> multiGet(List<String> keys, long t) throws IOException {
+        sendMultiGet(keys, t);
+        flush();
+        return readMultiGet();
+    }
+
+    public List<Map.Entry<String, String>> rangeSnapshot(String fromKey, boolean fromInclusive,
+                                                         String toKey, boolean toInclusive, long t) throws IOException {
+        sendRangeSnapshot(fromKey, fromInclusive, toKey, toInclusive, t);
+        flush();
+        List<Map.Entry<String, String>> result = new ArrayList<>();
+        readEntries((k, p) -> result.add(new AbstractMap.SimpleEntry<>(k, p)));
+        return result;
+    }
+
+    public List<Map.Entry<String, String>> snapshot(long t) throws IOException {
+        sendSnapshot(t);
+        flush();
+        List<Map.Entry<String, String>> result = new ArrayList<>();
+        readEntries((k, p) -> result.add(new AbstractMap.SimpleEntry<>(k, p)));
+        return result;
+    }
+
+    public void sendGet(String key, long t) throws IOException {
+        byte[] k = MVMProtocol.utf8(key);
+        beginRequest(MVMProtocol.OP_GET, 8 + MVMProtocol.encodedLength(k));
+        out.putLong(t);
+        MVMProtocol.putString(out, k);
+    }
+
+    public void sendAppend(String key, String payload) throws IOException {
+        byte[] k = MVMProtocol.utf8(key);
+        byte[] p = MVMProtocol.utf8(payload);
+        beginRequest(MVMProtocol.OP_APPEND, MVMProtocol.encodedLength(k) + MVMProtocol.encodedLength(p));
+        MVMProtocol.putString(out, k);
+        MVMProtocol.putString(out, p);
+    }
+
+    public void sendMultiGet(List<String> keys, long t) throws IOException {
+        List<byte[]> encoded = new ArrayList<>(keys.size());
+        int length = 12;
+        for (String key : keys) {
+            byte[] k = MVMProtocol.utf8(key);
+            encoded.add(k);
+            length += MVMProtocol.encodedLength(k);
+        }
+        beginRequest(MVMProtocol.OP_MULTI_GET, length);
+        out.putLong(t).putInt(encoded.size());
+        for (byte[] k : encoded) {
+            MVMProtocol.putString(out, k);
+        }
+    }
+
+    public void sendRangeSnapshot(String fromKey, boolean fromInclusive, String toKey, boolean toInclusive, long t) throws IOException {
+        byte[] from = MVMProtocol.utf8(fromKey);
+        byte[] to = MVMProtocol.utf8(toKey);
+        beginRequest(MVMProtocol.OP_RANGE, 9 + MVMProtocol.encodedLength(from) + MVMProtocol.encodedLength(to));
+        byte flags = 0;
+        if (fromInclusive) {
+            flags |= MVMProtocol.FROM_INCLUSIVE;
+        }
+        if (toInclusive) {
+            flags |= MVMProtocol.TO_INCLUSIVE;
+        }
+        out.putLong(t).put(flags);
+        MVMProtocol.putString(out, from);
+        MVMProtocol.putString(out, to);
+    }
+
+    public void sendSnapshot(long t) throws IOException {
+        beginRequest(MVMProtocol.OP_SNAPSHOT, 8);
+        out.putLong(t);
+    }
+
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * @return the payload, or null if no version of the key is visible
+     */
+    public String readGet() throws IOException {
+        ByteBuffer frame = readFrame();
+        byte status = expectStatus(frame, MVMProtocol.STATUS_FOUND, MVMProtocol.STATUS_NOT_FOUND);
+        return status == MVMProtocol.STATUS_FOUND ? MVMProtocol.getString(frame) : null;
+    }
+
+    public long readAppend() throws IOException {
+        ByteBuffer frame = readFrame();
+        expectStatus(frame, MVMProtocol.STATUS_OK, MVMProtocol.STATUS_OK);
+        return frame.getLong();
+    }
+
+    /**
+     * @return one payload per requested key, null where no version is visible
+     */
+    public List<String> readMultiGet() throws IOException {
+        ByteBuffer frame = readFrame();
+        expectStatus(frame, MVMProtocol.STATUS_OK, MVMProtocol.STATUS_OK);
+        int count = frame.getInt();
+        List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(frame.get() != 0 ? MVMProtocol.getString(frame) : null);
+        }
+        return result;
+    }
+
+    /**
+     * Reads a streamed range-snapshot or snapshot response, handing each entry to the consumer as its chunk arrives.
+     * @return the number of entries
+     */
+    public long readEntries(BiConsumer<String, String> consumer) throws IOException {
+        while (true) {
+            ByteBuffer frame = readFrame();
+            byte status = expectStatus(frame, MVMProtocol.STATUS_CHUNK, MVMProtocol.STATUS_END);
+            if (status == MVMProtocol.STATUS_END) {
+                return frame.getLong();
+            }
+            int count = frame.getInt();
+            for (int i = 0; i < count; i++) {
+                String k = MVMProtocol.getString(frame);
+                consumer.accept(k, MVMProtocol.getString(frame));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void beginRequest(byte op, int bodyLength) throws IOException {
+        int frameLength = 5 + bodyLength;
+        if (out.remaining() < frameLength) {
+            flush();
+            if (out.capacity() < frameLength) {
+                out = ByteBuffer.allocateDirect(frameLength);
+            }
+        }
+        out.putInt(1 + bodyLength).put(op);
+    }
+
+    private ByteBuffer readFrame() throws IOException {
+        fill(4);
+        int length = in.getInt(in.position());
+        if (length <= 0 || length > MVMProtocol.MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        fill(4 + length);
+        ByteBuffer frame = in.slice(in.position() + 4, length);
+        in.position(in.position() + 4 + length);
+        return frame;
+    }
+
+    private void fill(int bytes) throws IOException {
+        if (in.remaining() >= bytes) {
+            return;
+        }
+        if (in.capacity() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocateDirect(Integer.highestOneBit(bytes) << 1);
+            grown.put(in).flip();
+            in = grown;
+        }
+        in.compact();
+        try {
+            while (in.position() < bytes) {
+                if (channel.read(in) < 0) {
+                    throw new EOFException("Connection closed by server");
+                }
+            }
+        } finally {
+            in.flip();
+        }
+    }
+
+    private static byte expectStatus(ByteBuffer frame, byte expected, byte alternative) throws IOException {
+        byte status = frame.get();
+        if (status == MVMProtocol.STATUS_ERROR) {
+            throw new IOException("Server error: " + MVMProtocol.getString(frame));
+        }
+        if (status != expected && status != alternative) {
+            throw new IOException("Unexpected response status " + status);
+        }
+        return status;
+    }
+}
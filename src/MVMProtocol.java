@@ -0,0 +1,89 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary wire protocol shared by {@link MVMServer} and {@link MVMClient}.
+ * <p>
+ * Every frame is {@code [int bodyLength][body]}. A request body starts with an opcode, a response body with a
+ * status byte. Strings are {@code [int byteLength][UTF-8 bytes]}, all integers are big-endian. Requests may be
+ * pipelined; responses come back in request order.
+ * <pre>
+ * GET       t:long key:str                        -> FOUND payload:str | NOT_FOUND
+ * APPEND    key:str payload:str                   -> OK version:long
+ * MULTI_GET t:long n:int key:str * n              -> OK n:int (present:byte [payload:str]) * n
+ * RANGE     t:long flags:byte from:str to:str     -> CHUNK* END
+ * SNAPSHOT  t:long                                -> CHUNK* END
+ * CHUNK = n:int (key:str payload:str) * n,  END = total:long
+ * </pre>
+ * RANGE flags: bit 0 = fromInclusive, bit 1 = toInclusive. Any request may instead be answered with
+ * ERROR message:str.
+ */
+public final class MVMProtocol {
+    public static final byte OP_GET = 1;
+    public static final byte OP_APPEND = 2;
+    public static final byte OP_MULTI_GET = 3;
+    public static final byte OP_RANGE = 4;
+    public static final byte OP_SNAPSHOT = 5;
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_FOUND = 1;
+    public static final byte STATUS_NOT_FOUND = 2;
+    public static final byte STATUS_CHUNK = 3;
+    public static final byte STATUS_END = 4;
+    public static final byte STATUS_ERROR = 5;
+
+    public static final byte FROM_INCLUSIVE = 1;
+    public static final byte TO_INCLUSIVE = 2;
+
+    public static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+    private MVMProtocol() {
+    }
+
+    public static int encodedLength(byte[] utf8) {
+        return 4 + utf8.length;
+    }
+
+    public static void putString(ByteBuffer buffer, byte[] utf8) {
+        buffer.putInt(utf8.length).put(utf8);
+    }
+
+    public static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalStateException("Malformed string of length " + length);
+        }
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(buffer.position(), bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    public static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a write-mode buffer holding the bytes written to 'buffer' so far and room for at least
+     * 'required' more bytes, reusing 'buffer' when it is large enough.
+     */
+    public static ByteBuffer grow(ByteBuffer buffer, int required) {
+        int capacity = buffer.capacity();
+        while (capacity - buffer.position() < required) {
+            capacity *= 2;
+        }
+        if (capacity == buffer.capacity()) {
+            return buffer;
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+}
@@ -0,0 +1,477 @@
+import provided_classes.MultiVersionMap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Standalone network server exposing a MultiVersionMap over {@link MVMProtocol}.
+ * <p>
+ * A small, fixed number of event-loop threads each own a Selector; accepted connections are spread over
+ * them round-robin. The event loops only do I/O: the complete request frames of a connection are handed as
+ * one batch to a pool of worker threads, which run the map calls, and the results come back to the event
+ * loop, which encodes them straight into a per-connection direct write buffer. A connection has at most one
+ * batch in flight, so its responses keep request order. Snapshot responses are streamed: the result is
+ * encoded chunk by chunk only as fast as the socket drains. While a batch, a stream or a full write buffer is
+ * pending the connection stops reading, which pushes back on pipelining clients.
+ * <p>
+ * Payloads are opaque strings, serialized by the clients. The map is shared by all workers and is therefore
+ * wrapped in a {@link SynchronizedMVM}; appends are serialized, and reads run in parallel if the map's
+ * reads are read-only. A map backed by a remote store, such as Redis, holds the write lock for a store
+ * round trip on every append, which caps append throughput whatever the number of workers.
+ */
+public class MVMServer implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int HIGH_WATER = 256 * 1024;
+    private static final int CHUNK_BYTES = 32 * 1024;
+    private static final int MAX_BATCH = 256;
+    // Marks a Response whose result is the RuntimeException the request failed with
+    private static final byte FAILED = -1;
+
+    private final MultiVersionMap<String, String> map;
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] loops;
+    private final ExecutorService workers;
+    private volatile boolean running;
+    private int nextLoop;
+
+    public MVMServer(MultiVersionMap<String, String> map, int port, int eventLoops) throws IOException {
+        this(map, false, port, eventLoops, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param readOnlyReads true if the map's get and snapshots never modify it (an untiered BackedSimpleMVM),
+     *                      so they may run concurrently
+     * @param workerThreads number of threads running map calls
+     */
+    public MVMServer(MultiVersionMap<String, String> map, boolean readOnlyReads, int port, int eventLoops,
+                     int workerThreads) throws IOException {
+        if (eventLoops < 1) {
+            throw new IllegalArgumentException("eventLoops must be positive: " + eventLoops);
+        }
+        if (workerThreads < 1) {
+            throw new IllegalArgumentException("workerThreads must be positive: " + workerThreads);
+        }
+        this.map = new SynchronizedMVM<>(map, readOnlyReads);
+        AtomicInteger workerIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "mvm-server-worker-" + workerIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        serverChannel.configureBlocking(false);
+        this.loops = new EventLoop[eventLoops];
+        for (int i = 0; i < eventLoops; i++) {
+            loops[i] = new EventLoop(i);
+        }
+        serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public void start() {
+        running = true;
+        for (EventLoop loop : loops) {
+            loop.thread.start();
+        }
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        for (EventLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+        for (EventLoop loop : loops) {
+            try {
+                loop.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        serverChannel.close();
+        for (EventLoop loop : loops) {
+            for (SelectionKey key : loop.selector.keys()) {
+                key.channel().close();
+            }
+            loop.selector.close();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            EventLoop loop = loops[nextLoop++ % loops.length];
+            loop.newConnections.add(channel);
+            loop.selector.wakeup();
+        }
+    }
+
+    private class EventLoop implements Runnable {
+        final Selector selector;
+        final Thread thread;
+        final Queue<SocketChannel> newConnections = new ConcurrentLinkedQueue<>();
+        // Completed worker batches, to be run on this loop's thread
+        final Queue<Runnable> completions = new ConcurrentLinkedQueue<>();
+
+        EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "mvm-server-loop-" + index);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+                    SocketChannel channel;
+                    while ((channel = newConnections.poll()) != null) {
+                        Connection connection = new Connection(channel, this);
+                        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                    }
+                    Runnable completion;
+                    while ((completion = completions.poll()) != null) {
+                        completion.run();
+                    }
+                    Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                    while (selected.hasNext()) {
+                        SelectionKey key = selected.next();
+                        selected.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                            continue;
+                        }
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                connection.onReadable();
+                            } else if (key.isWritable()) {
+                                connection.pump();
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            connection.close();
+                        }
+                    }
+                } catch (IOException e) {
+                    if (running) {
+                        System.err.println("Event loop error: " + e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Outcome of one request: its opcode and what the map returned, or FAILED and the exception.
+     */
+    private record Response(byte op, Object result) {
+    }
+
+    private class Connection {
+        final SocketChannel channel;
+        final EventLoop loop;
+        SelectionKey key;
+        // Read mode between events: position..limit holds received, not yet parsed bytes
+        ByteBuffer in;
+        // Write mode: 0..position holds encoded, not yet sent bytes
+        ByteBuffer out;
+        Iterator<Map.Entry<String, String>> stream;
+        long streamed;
+        // True while a batch of requests is with the workers; nothing is parsed or read meanwhile
+        boolean inFlight;
+        // Responses of the last batch, not yet encoded
+        final Queue<Response> responses = new ArrayDeque<>();
+
+        Connection(SocketChannel channel, EventLoop loop) {
+            this.channel = channel;
+            this.loop = loop;
+            this.in = ByteBuffer.allocateDirect(BUFFER_SIZE).flip();
+            this.out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        void onReadable() throws IOException {
+            in.compact();
+            int read = channel.read(in);
+            in.flip();
+            if (read < 0) {
+                close();
+                return;
+            }
+            pump();
+        }
+
+        void pump() throws IOException {
+            while (true) {
+                while (out.position() < HIGH_WATER) {
+                    if (stream != null) {
+                        fillFromStream();
+                    } else if (!responses.isEmpty()) {
+                        encode(responses.poll());
+                    } else {
+                        break;
+                    }
+                }
+                out.flip();
+                channel.write(out);
+                out.compact();
+                if (out.position() > 0 || (stream == null && responses.isEmpty())) {
+                    break;
+                }
+            }
+            boolean idle = stream == null && responses.isEmpty() && !inFlight;
+            if (idle) {
+                dispatch();
+            }
+            int ops = 0;
+            if (idle && !inFlight && out.position() < HIGH_WATER) {
+                ops |= SelectionKey.OP_READ;
+            }
+            if (out.position() > 0) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            key.interestOps(ops);
+        }
+
+        void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Nothing left to do for this connection
+            }
+        }
+
+        /**
+         * Hands the complete frames received so far to the workers, if there are any.
+         */
+        private void dispatch() {
+            List<ByteBuffer> frames = new ArrayList<>();
+            ByteBuffer frame;
+            while (frames.size() < MAX_BATCH && (frame = nextFrame()) != null) {
+                frames.add(frame);
+            }
+            if (frames.isEmpty()) {
+                return;
+            }
+            inFlight = true;
+            workers.execute(() -> {
+                List<Response> batch = new ArrayList<>(frames.size());
+                for (ByteBuffer request : frames) {
+                    batch.add(execute(request));
+                }
+                loop.completions.add(() -> onBatchDone(batch));
+                loop.selector.wakeup();
+            });
+        }
+
+        private void onBatchDone(List<Response> batch) {
+            if (!key.isValid()) {
+                return;
+            }
+            inFlight = false;
+            responses.addAll(batch);
+            try {
+                pump();
+            } catch (IOException | RuntimeException e) {
+                close();
+            }
+        }
+
+        /**
+         * @return a copy of the next complete frame's body, which the read buffer may overwrite once
+         * it is with a worker, or null if no complete frame has been received
+         */
+        private ByteBuffer nextFrame() {
+            if (in.remaining() < 4) {
+                return null;
+            }
+            int length = in.getInt(in.position());
+            if (length <= 0 || length > MVMProtocol.MAX_FRAME_LENGTH) {
+                throw new IllegalStateException("Invalid frame length " + length);
+            }
+            if (in.remaining() < 4 + length) {
+                if (in.capacity() < 4 + length) {
+                    ByteBuffer grown = ByteBuffer.allocateDirect(Integer.highestOneBit(4 + length) << 1);
+                    grown.put(in).flip();
+                    in = grown;
+                }
+                return null;
+            }
+            ByteBuffer frame = ByteBuffer.allocate(length).put(in.slice(in.position() + 4, length)).flip();
+            in.position(in.position() + 4 + length);
+            return frame;
+        }
+
+        /**
+         * Runs one request against the map; called on a worker thread.
+         */
+        private Response execute(ByteBuffer frame) {
+            try {
+                byte op = frame.get();
+                return switch (op) {
+                    case MVMProtocol.OP_GET -> {
+                        long t = frame.getLong();
+                        yield new Response(op, map.get(MVMProtocol.getString(frame), t));
+                    }
+                    case MVMProtocol.OP_APPEND -> {
+                        String k = MVMProtocol.getString(frame);
+                        yield new Response(op, map.append(k, MVMProtocol.getString(frame)));
+                    }
+                    case MVMProtocol.OP_MULTI_GET -> {
+                        long t = frame.getLong();
+                        int count = frame.getInt();
+                        List<Map.Entry<String, String>> entries = new ArrayList<>(count);
+                        for (int i = 0; i < count; i++) {
+                            entries.add(map.get(MVMProtocol.getString(frame), t));
+                        }
+                        yield new Response(op, entries);
+                    }
+                    case MVMProtocol.OP_RANGE -> {
+                        long t = frame.getLong();
+                        byte flags = frame.get();
+                        String fromKey = MVMProtocol.getString(frame);
+                        String toKey = MVMProtocol.getString(frame);
+                        yield new Response(op, map.rangeSnapshot(fromKey, (flags & MVMProtocol.FROM_INCLUSIVE) != 0,
+                                toKey, (flags & MVMProtocol.TO_INCLUSIVE) != 0, t));
+                    }
+                    case MVMProtocol.OP_SNAPSHOT -> new Response(op, map.snapshot(frame.getLong()));
+                    default -> throw new IllegalArgumentException("Unknown opcode " + op);
+                };
+            } catch (RuntimeException e) {
+                // Framing is intact, so only this request fails
+                return new Response(FAILED, e);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void encode(Response response) {
+            if (response.op() == MVMProtocol.OP_RANGE || response.op() == MVMProtocol.OP_SNAPSHOT) {
+                // Streamed responses write their own frames
+                startStream((Iterator<Map.Entry<String, String>>) response.result());
+                return;
+            }
+            int start = beginFrame();
+            switch (response.op()) {
+                case FAILED -> {
+                    byte[] message = MVMProtocol.utf8(String.valueOf(((RuntimeException) response.result()).getMessage()));
+                    reserve(1 + MVMProtocol.encodedLength(message));
+                    out.put(MVMProtocol.STATUS_ERROR);
+                    MVMProtocol.putString(out, message);
+                }
+                case MVMProtocol.OP_GET -> {
+                    Map.Entry<String, String> entry = (Map.Entry<String, String>) response.result();
+                    if (entry == null) {
+                        reserve(1);
+                        out.put(MVMProtocol.STATUS_NOT_FOUND);
+                    } else {
+                        byte[] payload = MVMProtocol.utf8(entry.getValue());
+                        reserve(1 + MVMProtocol.encodedLength(payload));
+                        out.put(MVMProtocol.STATUS_FOUND);
+                        MVMProtocol.putString(out, payload);
+                    }
+                }
+                case MVMProtocol.OP_APPEND -> {
+                    reserve(9);
+                    out.put(MVMProtocol.STATUS_OK).putLong((Long) response.result());
+                }
+                case MVMProtocol.OP_MULTI_GET -> {
+                    List<Map.Entry<String, String>> entries = (List<Map.Entry<String, String>>) response.result();
+                    reserve(5);
+                    out.put(MVMProtocol.STATUS_OK).putInt(entries.size());
+                    for (Map.Entry<String, String> entry : entries) {
+                        if (entry == null) {
+                            reserve(1);
+                            out.put((byte) 0);
+                        } else {
+                            byte[] payload = MVMProtocol.utf8(entry.getValue());
+                            reserve(1 + MVMProtocol.encodedLength(payload));
+                            out.put((byte) 1);
+                            MVMProtocol.putString(out, payload);
+                        }
+                    }
+                }
+                default -> throw new IllegalStateException("Unexpected response for opcode " + response.op());
+            }
+            endFrame(start);
+        }
+
+        private void startStream(Iterator<Map.Entry<String, String>> iterator) {
+            stream = iterator;
+            streamed = 0;
+        }
+
+        private void fillFromStream() {
+            while (out.position() < HIGH_WATER) {
+                int start = beginFrame();
+                reserve(5);
+                out.put(MVMProtocol.STATUS_CHUNK);
+                int countPosition = out.position();
+                out.putInt(0);
+                int count = 0;
+                while (stream.hasNext() && out.position() - start < CHUNK_BYTES) {
+                    Map.Entry<String, String> entry = stream.next();
+                    byte[] k = MVMProtocol.utf8(entry.getKey());
+                    byte[] payload = MVMProtocol.utf8(entry.getValue());
+                    reserve(MVMProtocol.encodedLength(k) + MVMProtocol.encodedLength(payload));
+                    MVMProtocol.putString(out, k);
+                    MVMProtocol.putString(out, payload);
+                    count++;
+                }
+                if (count > 0) {
+                    out.putInt(countPosition, count);
+                    endFrame(start);
+                    streamed += count;
+                } else {
+                    out.position(start);
+                }
+                if (!stream.hasNext()) {
+                    start = beginFrame();
+                    reserve(9);
+                    out.put(MVMProtocol.STATUS_END).putLong(streamed);
+                    endFrame(start);
+                    stream = null;
+                    return;
+                }
+            }
+        }
+
+        private int beginFrame() {
+            reserve(4);
+            int start = out.position();
+            out.putInt(0);
+            return start;
+        }
+
+        private void endFrame(int start) {
+            out.putInt(start, out.position() - start - 4);
+        }
+
+        private void reserve(int bytes) {
+            out = MVMProtocol.grow(out, bytes);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+import provided_classes.FlushableKVStore;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Heap-backed KVStore, for running benchmarks and load tests without a Redis server.
+ */
+public class MemoryKVStore implements FlushableKVStore {
+    private final ConcurrentHashMap<String, String> map = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(String storeKey, String storeValue) {
+        map.put(storeKey, storeValue);
+    }
+
+    @Override
+    public String get(String storeKey) {
+        return map.get(storeKey);
+    }
+
+    @Override
+    public void flushDB() {
+        map.clear();
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * @return the UTF-8 size of all stored keys and values in bytes
+     */
+    public long storedBytes() {
+        long total = 0;
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            total += entry.getKey().getBytes(StandardCharsets.UTF_8).length
+                    + entry.getValue().getBytes(StandardCharsets.UTF_8).length;
+        }
+        return total;
+    }
+}
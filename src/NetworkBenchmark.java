@@ -0,0 +1,117 @@
+import provided_classes.VersionListFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loopback benchmark for {@link MVMServer}: starts a server on an ephemeral port, preloads it through a
+ * client and then lets several pipelining clients issue a read/append mix for a fixed time.
+ */
+public class NetworkBenchmark {
+
+    public static void run(String[] args) throws Exception {
+        Options options = Options.parse("netbench", args);
+        String implName = options.get("impl", "BackedVLinkedList");
+        int clients = options.getInt("clients", 8);
+        int eventLoops = options.getInt("loops", 2);
+        int workers = options.getInt("workers", Runtime.getRuntime().availableProcessors());
+        int pipeline = options.getInt("pipeline", 64);
+        int keyCount = options.getInt("keys", 10_000);
+        int durationSeconds = options.getInt("durationSeconds", 10);
+        int readPercent = options.getInt("readPercent", 90);
+        options.rejectUnknown();
+
+        VersionListFactory<String> factory = Options.factory(implName);
+        BackedSimpleMVM<String, String> mvm = new BackedSimpleMVM<>(factory, new MemoryKVStore());
+
+        try (MVMServer server = new MVMServer(mvm, true, 0, eventLoops, workers)) {
+            server.start();
+            System.out.printf("=== Loopback benchmark: %s, %d event loops, %d workers, %d clients, pipeline depth %d, %d%% reads ===%n",
+                    implName, eventLoops, workers, clients, pipeline, readPercent);
+
+            String[] keys = new String[keyCount];
+            for (int i = 0; i < keyCount; i++) {
+                keys[i] = String.format("KEY%06d", i);
+            }
+            AtomicLong latestVersion = new AtomicLong();
+            long preloadStart = System.nanoTime();
+            try (MVMClient client = new MVMClient("localhost", server.getPort())) {
+                for (int from = 0; from < keyCount; from += pipeline) {
+                    int to = Math.min(keyCount, from + pipeline);
+                    for (int i = from; i < to; i++) {
+                        client.sendAppend(keys[i], payload(keys[i], 1));
+                    }
+                    client.flush();
+                    for (int i = from; i < to; i++) {
+                        latestVersion.set(client.readAppend());
+                    }
+                }
+            }
+            System.out.printf("Preloaded %,d keys in %.1f ms%n", keyCount, (System.nanoTime() - preloadStart) / 1_000_000.0);
+
+            long deadline = System.nanoTime() + durationSeconds * 1_000_000_000L;
+            AtomicLong operations = new AtomicLong();
+            List<Thread> threads = new ArrayList<>();
+            int depth = pipeline;
+            int reads = readPercent;
+            int port = server.getPort();
+            for (int c = 0; c < clients; c++) {
+                Thread thread = new Thread(() -> {
+                    boolean[] isRead = new boolean[depth];
+                    try (MVMClient client = new MVMClient("localhost", port)) {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        while (System.nanoTime() < deadline) {
+                            for (int i = 0; i < depth; i++) {
+                                String key = keys[random.nextInt(keys.length)];
+                                isRead[i] = random.nextInt(100) < reads;
+                                if (isRead[i]) {
+                                    client.sendGet(key, 1 + random.nextLong(latestVersion.get()));
+                                } else {
+                                    client.sendAppend(key, payload(key, random.nextInt(1_000)));
+                                }
+                            }
+                            client.flush();
+                            for (int i = 0; i < depth; i++) {
+                                if (isRead[i]) {
+                                    client.readGet();
+                                } else {
+                                    latestVersion.accumulateAndGet(client.readAppend(), Math::max);
+                                }
+                            }
+                            operations.addAndGet(depth);
+                        }
+                    } catch (Exception e) {
+                        throw new RuntimeException("Benchmark client failed", e);
+                    }
+                }, "netbench-client-" + c);
+                threads.add(thread);
+            }
+            long start = System.nanoTime();
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("Throughput: %,.0f ops/s (%,d ops in %.1f s)%n",
+                    operations.get() / (elapsed / 1e9), operations.get(), elapsed / 1e9);
+
+            try (MVMClient client = new MVMClient("localhost", server.getPort())) {
+                long snapshotStart = System.nanoTime();
+                client.sendSnapshot(latestVersion.get());
+                client.flush();
+                long count = client.readEntries((k, p) -> {
+                });
+                System.out.printf("Streamed snapshot of %,d entries in %.1f ms%n", count,
+                        (System.nanoTime() - snapshotStart) / 1_000_000.0);
+            }
+        }
+    }
+
+    private static String payload(String key, int change) {
+        return "{\"title\":\"Some Title for " + key + "\",\"comment\":\"Change " + change + " for key " + key + "\"}";
+    }
+}
@@ -0,0 +1,82 @@
+import provided_classes.VersionListFactory;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Command-line helpers shared by the TestRunner commands: "name=value" options, e.g.
+ * {@code impl=BackedVLinkedList threads=8}, and lookup of version list factories by implementation name.
+ * <p>
+ * Options are read with the typed getters, which fall back to a default when the option is absent;
+ * {@link #rejectUnknown()} then fails on any option that no getter asked for.
+ */
+public class Options {
+    private final String command;
+    private final Map<String, String> values = new LinkedHashMap<>();
+    private final Set<String> used = new HashSet<>();
+
+    private Options(String command) {
+        this.command = command;
+    }
+
+    /**
+     * @param command name of the command, used in error messages
+     */
+    public static Options parse(String command, String[] args) {
+        Options options = new Options(command);
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected name=value but got: " + arg);
+            }
+            options.values.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    public String get(String name, String defaultValue) {
+        used.add(name);
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    public int getInt(String name, int defaultValue) {
+        String value = get(name, null);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    public long getLong(String name, long defaultValue) {
+        String value = get(name, null);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        String value = get(name, null);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    public <E extends Enum<E>> E getEnum(String name, Class<E> type, E defaultValue) {
+        String value = get(name, null);
+        return value == null ? defaultValue : Enum.valueOf(type, value.toUpperCase());
+    }
+
+    /**
+     * @throws IllegalArgumentException if an option was given that none of the getters asked for
+     */
+    public void rejectUnknown() {
+        for (String name : values.keySet()) {
+            if (!used.contains(name)) {
+                throw new IllegalArgumentException("Unknown " + command + " option: " + name);
+            }
+        }
+    }
+
+    /**
+     * Creates the factory class named {@code implName + "Factory"} through its no-argument constructor.
+     */
+    @SuppressWarnings("unchecked")
+    public static <P> VersionListFactory<P> factory(String implName) throws ReflectiveOperationException {
+        return (VersionListFactory<P>) Class.forName(implName + "Factory").getDeclaredConstructor().newInstance();
+    }
+}
@@ -0,0 +1,30 @@
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import provided_classes.Serializer;
+import provided_classes.Test.Payload;
+
+/**
+ * JSON serializer for {@link Payload}. Tiered maps need one that reads payloads back as their own type,
+ * because the payloads of evicted version lists are decoded again when the list is loaded or scanned.
+ */
+public class PayloadSerializer implements Serializer<Payload> {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Override
+    public String serialize(Payload payload) {
+        try {
+            return OBJECT_MAPPER.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Payload deSerialize(String serializedT) {
+        try {
+            return OBJECT_MAPPER.readValue(serializedT, Payload.class);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Secondary index over one payload field. For every value it keeps the (key, [fromVersion, toVersion))
+ * entries of the keys that carried that value; an entry is closed when a later version of its key carries
+ * a different value.
+ * <p>
+ * Each value's entries are held twice: all of them ordered by fromVersion, and the closed ones ordered by
+ * toVersion (entries are closed at increasing versions, so appending keeps that order) next to the open ones.
+ * A lookup at time t binary-searches both orders and scans whichever candidate set is smaller: the entries
+ * that started by t, or the entries still valid after t. A lookup at a recent t therefore costs about
+ * O(matches), not O(history of the value).
+ */
+public class SecondaryIndex<K extends Comparable<? super K>, P, V extends Comparable<? super V>> {
+    private static final long OPEN = Long.MAX_VALUE;
+
+    private final Function<? super P, ? extends V> extractor;
+    private final TreeMap<V, Postings<K, V>> postings;
+    // The entry that is currently valid for each key, if its latest payload has a non-null value
+    private final Map<K, IndexEntry<K, V>> openEntries;
+
+    private static class IndexEntry<K, V> {
+        final K key;
+        final V value;
+        final long fromVersion;
+        long toVersion;
+
+        IndexEntry(K key, V value, long fromVersion) {
+            this.key = key;
+            this.value = value;
+            this.fromVersion = fromVersion;
+            this.toVersion = OPEN;
+        }
+
+        boolean isValidAt(long timestamp) {
+            return fromVersion <= timestamp && timestamp < toVersion;
+        }
+    }
+
+    private static class Postings<K, V> {
+        final List<IndexEntry<K, V>> byFromVersion = new ArrayList<>();
+        final List<IndexEntry<K, V>> closedByToVersion = new ArrayList<>();
+        // Insertion order is fromVersion order
+        final LinkedHashMap<K, IndexEntry<K, V>> open = new LinkedHashMap<>();
+    }
+
+    public SecondaryIndex(Function<? super P, ? extends V> extractor) {
+        this.extractor = extractor;
+        this.postings = new TreeMap<>();
+        this.openEntries = new HashMap<>();
+    }
+
+    /**
+     * Records that payload p became the visible version of key k at the given version.
+     */
+    public void onAppend(K k, P p, long version) {
+        V value = p == null ? null : extractor.apply(p);
+        IndexEntry<K, V> current = openEntries.get(k);
+        if (current != null) {
+            if (value != null && current.value.compareTo(value) == 0) {
+                // Same value as before, the existing interval simply continues
+                return;
+            }
+            current.toVersion = version;
+            openEntries.remove(k);
+            Postings<K, V> previous = postings.get(current.value);
+            previous.open.remove(k);
+            previous.closedByToVersion.add(current);
+        }
+        if (value != null) {
+            IndexEntry<K, V> entry = new IndexEntry<>(k, value, version);
+            Postings<K, V> valuePostings = postings.computeIfAbsent(value, v -> new Postings<>());
+            valuePostings.byFromVersion.add(entry);
+            valuePostings.open.put(k, entry);
+            openEntries.put(k, entry);
+        }
+    }
+
+    /**
+     * @return the keys whose visible version at 'timestamp' has the given value, in key-order
+     */
+    public List<K> lookup(V value, long timestamp) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not indexed, so they cannot be looked up");
+        }
+        List<K> result = new ArrayList<>();
+        collect(postings.get(value), timestamp, result);
+        result.sort(Comparator.naturalOrder());
+        return result;
+    }
+
+    /**
+     * @return the keys whose visible version at 'timestamp' has a value between fromValue
+     * (inclusive, iff fromInclusive) and toValue (inclusive iff toInclusive), in key-order
+     */
+    public List<K> rangeScan(V fromValue, boolean fromInclusive, V toValue, boolean toInclusive, long timestamp) {
+        if (fromValue == null || toValue == null) {
+            throw new IllegalArgumentException("Range scans need non-null bounds");
+        }
+        List<K> result = new ArrayList<>();
+        for (Postings<K, V> valuePostings : postings.subMap(fromValue, fromInclusive, toValue, toInclusive).values()) {
+            collect(valuePostings, timestamp, result);
+        }
+        result.sort(Comparator.naturalOrder());
+        return result;
+    }
+
+    private static <K, V> void collect(Postings<K, V> valuePostings, long timestamp, List<K> result) {
+        if (valuePostings == null) {
+            return;
+        }
+        // Candidates are either the entries started by 'timestamp' or the ones still valid after it
+        int startedEnd = firstFromVersionAfter(valuePostings.byFromVersion, timestamp);
+        int closedStart = firstToVersionAfter(valuePostings.closedByToVersion, timestamp);
+        int stillValid = valuePostings.closedByToVersion.size() - closedStart + valuePostings.open.size();
+
+        if (startedEnd <= stillValid) {
+            for (int i = 0; i < startedEnd; i++) {
+                IndexEntry<K, V> entry = valuePostings.byFromVersion.get(i);
+                if (entry.isValidAt(timestamp)) {
+                    result.add(entry.key);
+                }
+            }
+            return;
+        }
+        for (int i = closedStart; i < valuePostings.closedByToVersion.size(); i++) {
+            IndexEntry<K, V> entry = valuePostings.closedByToVersion.get(i);
+            if (entry.fromVersion <= timestamp) {
+                result.add(entry.key);
+            }
+        }
+        for (IndexEntry<K, V> entry : valuePostings.open.values()) {
+            if (entry.fromVersion > timestamp) {
+                break;
+            }
+            result.add(entry.key);
+        }
+    }
+
+    private static <K, V> int firstFromVersionAfter(List<IndexEntry<K, V>> entries, long timestamp) {
+        int lo = 0;
+        int hi = entries.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (entries.get(mid).fromVersion <= timestamp) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static <K, V> int firstToVersionAfter(List<IndexEntry<K, V>> entries, long timestamp) {
+        int lo = 0;
+        int hi = entries.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (entries.get(mid).toVersion <= timestamp) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,81 @@
+import provided_classes.MultiVersionMap;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Wraps a MultiVersionMap so it can be shared between threads. Appends are serialized on a write lock.
+ * Reads take the write lock as well, unless the map was declared to have read-only reads, in which case they
+ * share a read lock and run in parallel. Snapshot results are copied while the lock is held, so the returned
+ * iterators are safe to drain concurrently with later appends.
+ */
+public class SynchronizedMVM<K extends Comparable<? super K>, P> implements MultiVersionMap<K, P> {
+    private final MultiVersionMap<K, P> delegate;
+    private final Lock readLock;
+    private final Lock writeLock;
+
+    public SynchronizedMVM(MultiVersionMap<K, P> delegate) {
+        this(delegate, false);
+    }
+
+    /**
+     * @param readOnlyReads true if get and the snapshots never modify the delegate, as for an untiered
+     *                      BackedSimpleMVM; a tiered one updates its LRU order and loads lists on reads
+     */
+    public SynchronizedMVM(MultiVersionMap<K, P> delegate, boolean readOnlyReads) {
+        this.delegate = delegate;
+        ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        this.writeLock = lock.writeLock();
+        this.readLock = readOnlyReads ? lock.readLock() : writeLock;
+    }
+
+    @Override
+    public Map.Entry<K, P> get(K k, long t) {
+        readLock.lock();
+        try {
+            return delegate.get(k, t);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public long append(K k, P p) {
+        writeLock.lock();
+        try {
+            return delegate.append(k, p);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, P>> rangeSnapshot(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive, long timestamp) {
+        readLock.lock();
+        try {
+            return copyOf(delegate.rangeSnapshot(fromKey, fromInclusive, toKey, toInclusive, timestamp));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, P>> snapshot(long timestamp) {
+        readLock.lock();
+        try {
+            return copyOf(delegate.snapshot(timestamp));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private Iterator<Map.Entry<K, P>> copyOf(Iterator<Map.Entry<K, P>> iterator) {
+        List<Map.Entry<K, P>> result = new ArrayList<>();
+        iterator.forEachRemaining(result::add);
+        return result.iterator();
+    }
+}
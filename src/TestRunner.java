@@ -1,4 +1,12 @@
+import provided_classes.FlushableKVStore;
 import provided_classes.Test;
+import provided_classes.Test.Payload;
+import provided_classes.VersionListFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 
 public class TestRunner {
     public static void main(String[] args) {
@@ -7,12 +15,31 @@ public class TestRunner {
         System.out.println("=======================================================\n");
         
         if (args.length == 0) {
-            System.out.println("Usage: java TestRunner [test|benchmark|both]");
+            System.out.println("Usage: java TestRunner [test|benchmark|both|tiertest|indextest|workload|server|netbench|compression|versionlists|tiering]");
             System.out.println();
             System.out.println("Commands:");
             System.out.println("  test      - Run test with test_data.csv");
             System.out.println("  benchmark - Run benchmark with benchmark_data.csv");
             System.out.println("  both      - Run both test and benchmark");
+            System.out.println("  tiertest  - Check heap-budgeted maps against untiered ones on test_data.csv");
+            System.out.println("  indextest - Check secondary index lookups against filtered snapshots of test_data.csv");
+            System.out.println("  workload  - Run the multi-threaded workload driver, options as name=value:");
+            System.out.println("              impl=BackedVLinkedList store=redis|memory data=data/benchmark_data.csv");
+            System.out.println("              threads=4 readWeight=80 appendWeight=15 rangeWeight=4 snapshotWeight=1");
+            System.out.println("              keyDistribution=zipfian|uniform timestampDistribution=zipfian|uniform");
+            System.out.println("              zipfTheta=0.99 rangeWidth=50 targetOpsPerSecond=0 (0 = closed loop)");
+            System.out.println("              warmupSeconds=5 durationSeconds=30 reportIntervalSeconds=5");
+            System.out.println("              budget=0 (resident versions of a heap-budgeted map, 0 = untiered)");
+            System.out.println("  server    - Serve a BackedSimpleMVM over the network: port=7379 loops=2 workers=<CPUs>");
+            System.out.println("              impl=BackedVLinkedList store=memory|redis (with redis every append waits for a round trip)");
+            System.out.println("  netbench  - Loopback server benchmark: impl=BackedVLinkedList clients=8 loops=2 workers=<CPUs> pipeline=64");
+            System.out.println("              keys=10000 durationSeconds=10 readPercent=90");
+            System.out.println("  compression - Compare plain and dictionary-compressed stores: impl=BackedVLinkedList");
+            System.out.println("              store=redis|memory data=data/benchmark_data.csv sampleSize=1000 dictionarySize=16384 warmupRuns=1");
+            System.out.println("  versionlists - Compare version list factories on a skewed workload: keys=50000 appends=1000000");
+            System.out.println("              zipfTheta=0.99 snapshotRuns=5 gets=200000");
+            System.out.println("  tiering   - Hot and cold get latency of a heap-budgeted map: impl=BackedVLinkedList");
+            System.out.println("              store=redis|memory data=data/benchmark_data.csv budget=10000 gets=200000 zipfTheta=0.99");
             System.out.println();
             System.out.println("Note: Ensure Redis server is running on localhost:6379");
             System.out.println();
@@ -34,9 +61,33 @@ public class TestRunner {
                     System.out.println("\n\n");
                     Test.runBenchmark();
                     break;
+                case "tiertest":
+                    Test.runTieringTest();
+                    break;
+                case "indextest":
+                    Test.runIndexTest();
+                    break;
+                case "workload":
+                    runWorkload(args);
+                    break;
+                case "server":
+                    runServer(args);
+                    break;
+                case "netbench":
+                    NetworkBenchmark.run(Arrays.copyOfRange(args, 1, args.length));
+                    break;
+                case "compression":
+                    CompressionBenchmark.run(Arrays.copyOfRange(args, 1, args.length));
+                    break;
+                case "versionlists":
+                    VersionListBenchmark.run(Arrays.copyOfRange(args, 1, args.length));
+                    break;
+                case "tiering":
+                    TieringBenchmark.run(Arrays.copyOfRange(args, 1, args.length));
+                    break;
                 default:
                     System.out.println("Unknown command: " + command);
-                    System.out.println("Use: java TestRunner [test|benchmark|both]");
+                    System.out.println("Use: java TestRunner [test|benchmark|both|tiertest|indextest|workload|server|netbench|compression|versionlists|tiering]");
             }
         } catch (Exception e) {
             System.err.println("\nError: " + e.getMessage());
@@ -47,5 +98,69 @@ public class TestRunner {
             e.printStackTrace();
         }
     }
-}
 
+    private static void runWorkload(String[] args) throws Exception {
+        Options options = Options.parse("workload", Arrays.copyOfRange(args, 1, args.length));
+        String implName = options.get("impl", "BackedVLinkedList");
+        String storeName = options.get("store", "redis");
+        String dataPath = options.get("data", "data/benchmark_data.csv");
+        long budget = options.getLong("budget", 0);
+        WorkloadDriver.Config config = WorkloadDriver.Config.parse(options);
+        options.rejectUnknown();
+
+        List<Map.Entry<String, Payload>> data = Test.readData(dataPath);
+        if (data.isEmpty()) {
+            System.out.println("No data loaded from " + dataPath);
+            return;
+        }
+        TreeSet<String> keys = new TreeSet<>();
+        for (Map.Entry<String, Payload> entry : data) {
+            keys.add(entry.getKey());
+        }
+
+        FlushableKVStore store = storeName.equals("memory") ? new MemoryKVStore() : new JedisKVStore();
+        store.flushDB();
+        VersionListFactory<Payload> factory = Options.factory(implName);
+        BackedSimpleMVM<String, Payload> mvm = budget > 0
+                ? new BackedSimpleMVM<>(factory, store, new PayloadSerializer(), budget)
+                : new BackedSimpleMVM<>(factory, store);
+
+        System.out.println("=== Workload against " + implName + " on " + storeName + " store"
+                + (budget > 0 ? String.format(", budget %,d versions", budget) : "") + " ===");
+        WorkloadDriver driver = new WorkloadDriver(new SynchronizedMVM<>(mvm), keys, config);
+        long preloadNanos = driver.preload(data);
+        System.out.printf("Preloaded %d entries (%d keys) in %.2f ms%n%n", data.size(), keys.size(), preloadNanos / 1_000_000.0);
+        driver.run();
+        if (budget > 0) {
+            System.out.printf("  Resident: %,d versions of %,d keys%n", mvm.residentVersions(), mvm.residentKeys());
+        }
+
+        store.flushDB();
+    }
+
+    private static void runServer(String[] args) throws Exception {
+        Options options = Options.parse("server", Arrays.copyOfRange(args, 1, args.length));
+        int port = options.getInt("port", 7379);
+        int eventLoops = options.getInt("loops", 2);
+        int workers = options.getInt("workers", Runtime.getRuntime().availableProcessors());
+        String implName = options.get("impl", "BackedVLinkedList");
+        // Appends write through to the store while holding the map's write lock, so a remote store caps their rate
+        String storeName = options.get("store", "memory");
+        options.rejectUnknown();
+
+        FlushableKVStore store = storeName.equals("memory") ? new MemoryKVStore() : new JedisKVStore();
+        VersionListFactory<String> factory = Options.factory(implName);
+        // An untiered map only reads on get and snapshots, so those may run concurrently
+        MVMServer server = new MVMServer(new BackedSimpleMVM<>(factory, store), true, port, eventLoops, workers);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (java.io.IOException e) {
+                System.err.println("Error closing server: " + e.getMessage());
+            }
+        }));
+        server.start();
+        System.out.println("Serving " + implName + " on " + storeName + " store, port " + server.getPort() + ", with "
+                + eventLoops + " event loops and " + workers + " workers");
+    }
+}
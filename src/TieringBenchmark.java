@@ -0,0 +1,112 @@
+import provided_classes.FlushableKVStore;
+import provided_classes.Test;
+import provided_classes.Test.Payload;
+import provided_classes.VersionListFactory;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Loads a data file into a heap-budgeted BackedSimpleMVM and an untiered one, then replays the same skewed
+ * sequence of point reads against both. Reports how many versions and keys stay resident, and the get latency
+ * of the untiered map next to that of tiered gets on resident (hot) and evicted (cold) keys.
+ * <p>
+ * Keys are drawn from a Zipfian distribution and read timestamps uniformly. The sequence is replayed once
+ * unmeasured first, so the JIT is warm and the tiered map's resident set has followed the hot keys.
+ */
+public class TieringBenchmark {
+
+    public static void run(String[] args) throws Exception {
+        Options options = Options.parse("tiering benchmark", args);
+        String implName = options.get("impl", "BackedVLinkedList");
+        String storeName = options.get("store", "redis");
+        String dataPath = options.get("data", "data/benchmark_data.csv");
+        long budget = options.getLong("budget", 10_000);
+        int getCount = options.getInt("gets", 200_000);
+        double theta = options.getDouble("zipfTheta", 0.99);
+        options.rejectUnknown();
+
+        List<Map.Entry<String, Payload>> data = Test.readData(dataPath);
+        if (data.isEmpty()) {
+            System.out.println("No data loaded from " + dataPath);
+            return;
+        }
+        String[] keys = data.stream().map(Map.Entry::getKey).distinct().sorted().toArray(String[]::new);
+        System.out.printf("=== Tiering benchmark: %,d entries (%,d keys) from %s, %s on %s store, budget %,d versions ===%n%n",
+                data.size(), keys.length, dataPath, implName, storeName, budget);
+
+        FlushableKVStore store = storeName.equals("memory") ? new MemoryKVStore() : new JedisKVStore();
+        store.flushDB();
+        VersionListFactory<Payload> factory = Options.factory(implName);
+        BackedSimpleMVM<String, Payload> plain = new BackedSimpleMVM<>(factory, store);
+        BackedSimpleMVM<String, Payload> tiered = new BackedSimpleMVM<>(factory, store, new PayloadSerializer(), budget);
+
+        long plainInsert = load(plain, data);
+        long tieredInsert = load(tiered, data);
+        System.out.printf("Insertion: untiered %.2f ms, tiered %.2f ms%n", plainInsert / 1_000_000.0, tieredInsert / 1_000_000.0);
+        printResident("after loading", tiered, data.size(), keys.length);
+
+        // Hot Zipfian ranks are spread over the key space, as in the workload driver
+        List<String> shuffled = new ArrayList<>(Arrays.asList(keys));
+        Collections.shuffle(shuffled, new Random(42));
+        ZipfianGenerator zipf = new ZipfianGenerator(keys.length, theta);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String[] getKeys = new String[getCount];
+        long[] getTimestamps = new long[getCount];
+        for (int i = 0; i < getCount; i++) {
+            getKeys[i] = shuffled.get((int) zipf.next());
+            getTimestamps[i] = 1 + random.nextLong(data.size());
+        }
+
+        LatencyHistogram plainGets = new LatencyHistogram();
+        LatencyHistogram hotGets = new LatencyHistogram();
+        LatencyHistogram coldGets = new LatencyHistogram();
+        for (int pass = 0; pass < 2; pass++) {
+            boolean measured = pass == 1;
+            for (int i = 0; i < getCount; i++) {
+                long start = System.nanoTime();
+                plain.get(getKeys[i], getTimestamps[i]);
+                if (measured) {
+                    plainGets.record(System.nanoTime() - start);
+                }
+            }
+            for (int i = 0; i < getCount; i++) {
+                boolean hot = tiered.isResident(getKeys[i]);
+                long start = System.nanoTime();
+                tiered.get(getKeys[i], getTimestamps[i]);
+                if (measured) {
+                    (hot ? hotGets : coldGets).record(System.nanoTime() - start);
+                }
+            }
+        }
+
+        printResident("after the gets", tiered, data.size(), keys.length);
+        System.out.println();
+        printGets("Untiered", plainGets.snapshot());
+        printGets("Hot", hotGets.snapshot());
+        printGets("Cold", coldGets.snapshot());
+
+        store.flushDB();
+    }
+
+    private static long load(BackedSimpleMVM<String, Payload> mvm, List<Map.Entry<String, Payload>> data) {
+        long start = System.nanoTime();
+        for (Map.Entry<String, Payload> entry : data) {
+            mvm.append(entry.getKey(), entry.getValue());
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void printResident(String when, BackedSimpleMVM<String, Payload> tiered, long versions, int keys) {
+        System.out.printf("Resident %s: %,d of %,d versions, %,d of %,d keys%n", when,
+                tiered.residentVersions(), versions, tiered.residentKeys(), keys);
+    }
+
+    private static void printGets(String label, long[] counts) {
+        System.out.printf("  %-8s gets %,9d   p50=%,10.1f us   p99=%,10.1f us   p999=%,10.1f us%n",
+                label, LatencyHistogram.count(counts),
+                LatencyHistogram.valueAtPercentile(counts, 50) / 1_000.0,
+                LatencyHistogram.valueAtPercentile(counts, 99) / 1_000.0,
+                LatencyHistogram.valueAtPercentile(counts, 99.9) / 1_000.0);
+    }
+}
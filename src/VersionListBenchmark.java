@@ -0,0 +1,115 @@
+import provided_classes.KVStore;
+import provided_classes.Test.Payload;
+import provided_classes.VersionListFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compares the heap footprint and snapshot/get latency of the version-list factories on a skewed workload:
+ * appends are spread over the keys with a Zipfian distribution, so a few hot keys collect thousands of
+ * versions while most keys only get one or two.
+ * <p>
+ * The lists are given a store that drops all writes, so only the in-memory structures are measured.
+ */
+public class VersionListBenchmark {
+    private static final String[] IMPLEMENTATIONS = {"BackedVLinkedList", "BackedFrugalSkiplist", "BackedAdaptiveVersionList"};
+
+    public static void run(String[] args) throws Exception {
+        Options options = Options.parse("version list benchmark", args);
+        int keyCount = options.getInt("keys", 50_000);
+        int appends = options.getInt("appends", 1_000_000);
+        double theta = options.getDouble("zipfTheta", 0.99);
+        int snapshotRuns = options.getInt("snapshotRuns", 5);
+        int getCount = options.getInt("gets", 200_000);
+        options.rejectUnknown();
+
+        // The same skewed key sequence is replayed for every implementation
+        ZipfianGenerator zipf = new ZipfianGenerator(keyCount, theta);
+        String[] keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = String.format("KEY%06d", i);
+        }
+        int[] sequence = new int[appends];
+        for (int i = 0; i < appends; i++) {
+            sequence[i] = (int) zipf.next();
+        }
+        Payload[] payloads = new Payload[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            payloads[i] = new Payload("Some Title for " + keys[i], "Change for key " + keys[i], "0");
+        }
+        long[] timestamps = {appends / 1000, appends / 100, appends / 10, appends / 2, appends};
+
+        System.out.printf("=== Version list benchmark: %,d appends over %,d keys, Zipfian theta %.2f ===%n%n",
+                appends, keyCount, theta);
+
+        KVStore discardingStore = new KVStore() {
+            @Override
+            public void put(String storeKey, String storeValue) {
+            }
+
+            @Override
+            public String get(String storeKey) {
+                return null;
+            }
+        };
+
+        for (String implName : IMPLEMENTATIONS) {
+            VersionListFactory<Payload> factory = Options.factory(implName);
+
+            long heapBefore = usedHeap();
+            BackedSimpleMVM<String, Payload> mvm = new BackedSimpleMVM<>(factory, discardingStore);
+            long startInsert = System.nanoTime();
+            for (int keyIndex : sequence) {
+                mvm.append(keys[keyIndex], payloads[keyIndex]);
+            }
+            long insertNanos = System.nanoTime() - startInsert;
+            long heapAfter = usedHeap();
+
+            System.out.println("--- " + implName + " ---");
+            System.out.printf("Insertion: %.1f ms, retained heap: %,.1f MB (%.1f bytes/version)%n",
+                    insertNanos / 1_000_000.0, (heapAfter - heapBefore) / (1024.0 * 1024.0),
+                    (double) (heapAfter - heapBefore) / appends);
+
+            for (long timestamp : timestamps) {
+                List<Long> times = new ArrayList<>();
+                int entries = 0;
+                for (int run = 0; run < snapshotRuns + 1; run++) {
+                    long start = System.nanoTime();
+                    Iterator<Map.Entry<String, Payload>> snapshot = mvm.snapshot(timestamp);
+                    entries = 0;
+                    while (snapshot.hasNext()) {
+                        snapshot.next();
+                        entries++;
+                    }
+                    // The first run only warms up
+                    if (run > 0) {
+                        times.add(System.nanoTime() - start);
+                    }
+                }
+                System.out.printf("  Snapshot at %,9d: %,7d entries, %8.3f ms%n", timestamp, entries,
+                        times.stream().mapToLong(Long::longValue).average().orElse(0) / 1_000_000.0);
+            }
+
+            // Point reads of hot keys (the Zipfian head) at random timestamps
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long startGets = System.nanoTime();
+            for (int i = 0; i < getCount; i++) {
+                mvm.get(keys[(int) zipf.next()], 1 + random.nextLong(appends));
+            }
+            long getNanos = System.nanoTime() - startGets;
+            System.out.printf("  Skewed gets: %,.0f ns/op%n%n", (double) getNanos / getCount);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
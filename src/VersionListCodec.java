@@ -0,0 +1,99 @@
+import java.util.List;
+
+/**
+ * Compact string encoding of a whole version list, used to park cold lists in the KVStore.
+ * Layout: {@code <count>|<v0>,<delta1>,...|<len0>:<payload0><len1>:<payload1>...}
+ * with versions delta-encoded in base 36 and payloads length-prefixed (no escaping needed).
+ */
+public final class VersionListCodec {
+    private static final int RADIX = 36;
+
+    private VersionListCodec() {
+    }
+
+    public static String encode(long[] versions, int count, List<String> payloads) {
+        StringBuilder sb = new StringBuilder(count * 16);
+        sb.append(Integer.toString(count, RADIX)).append('|');
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(Long.toString(versions[i] - previous, RADIX));
+            previous = versions[i];
+        }
+        sb.append('|');
+        for (int i = 0; i < count; i++) {
+            String payload = payloads.get(i);
+            sb.append(Integer.toString(payload.length(), RADIX)).append(':').append(payload);
+        }
+        return sb.toString();
+    }
+
+    public static long[] decodeVersions(String encoded) {
+        int countEnd = encoded.indexOf('|');
+        int count = Integer.parseInt(encoded, 0, countEnd, RADIX);
+        long[] versions = new long[count];
+        int pos = countEnd + 1;
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            int end = pos;
+            while (encoded.charAt(end) != ',' && encoded.charAt(end) != '|') {
+                end++;
+            }
+            previous += Long.parseLong(encoded, pos, end, RADIX);
+            versions[i] = previous;
+            pos = end + 1;
+        }
+        return versions;
+    }
+
+    public static String[] decodePayloads(String encoded) {
+        int count = Integer.parseInt(encoded, 0, encoded.indexOf('|'), RADIX);
+        String[] payloads = new String[count];
+        int pos = payloadsStart(encoded);
+        for (int i = 0; i < count; i++) {
+            int colon = encoded.indexOf(':', pos);
+            int length = Integer.parseInt(encoded, pos, colon, RADIX);
+            payloads[i] = encoded.substring(colon + 1, colon + 1 + length);
+            pos = colon + 1 + length;
+        }
+        return payloads;
+    }
+
+    /**
+     * Reads only the payload visible at 'timestamp' without materializing the rest of the list.
+     * @return the serialized payload, or null if no version is visible
+     */
+    public static String findVisible(String encoded, long timestamp) {
+        long[] versions = decodeVersions(encoded);
+        int index = -1;
+        int lo = 0;
+        int hi = versions.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (versions[mid] <= timestamp) {
+                index = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (index < 0) {
+            return null;
+        }
+        int pos = payloadsStart(encoded);
+        for (int i = 0; ; i++) {
+            int colon = encoded.indexOf(':', pos);
+            int length = Integer.parseInt(encoded, pos, colon, RADIX);
+            if (i == index) {
+                return encoded.substring(colon + 1, colon + 1 + length);
+            }
+            pos = colon + 1 + length;
+        }
+    }
+
+    private static int payloadsStart(String encoded) {
+        return encoded.indexOf('|', encoded.indexOf('|') + 1) + 1;
+    }
+}
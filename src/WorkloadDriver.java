@@ -0,0 +1,332 @@
+import provided_classes.MultiVersionMap;
+import provided_classes.Test.Payload;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Multi-threaded load generator for a MultiVersionMap. Worker threads issue a weighted mix of point reads,
+ * appends, range snapshots and full snapshots; keys and read timestamps are drawn uniformly or from a
+ * Zipfian distribution. Throughput and p50/p99/p999 latencies are reported per operation type for every
+ * reporting interval and for the whole run.
+ * <p>
+ * In open-loop mode (targetOpsPerSecond > 0) every operation has an intended start time and its latency
+ * is measured from that time, so queueing delay caused by a slow map is not hidden (no coordinated omission).
+ * When every worker can have a CPU of its own, workers sleep until shortly before each intended start and
+ * spin the rest of the way, so the timer slack of a sleep is not reported as map latency; with more workers
+ * than CPUs the spinning would delay the worker that is running an operation, so they only sleep.
+ * Operations of the initial warm-up period are not recorded.
+ */
+public class WorkloadDriver {
+    // Remaining wait below which an open-loop worker spins instead of parking
+    private static final long SPIN_NANOS = 100_000;
+
+    public enum Operation {READ, APPEND, RANGE, SNAPSHOT}
+
+    public enum Distribution {UNIFORM, ZIPFIAN}
+
+    public static class Config {
+        public int threads = 4;
+        public int readWeight = 80;
+        public int appendWeight = 15;
+        public int rangeWeight = 4;
+        public int snapshotWeight = 1;
+        public Distribution keyDistribution = Distribution.ZIPFIAN;
+        public Distribution timestampDistribution = Distribution.ZIPFIAN;
+        public double zipfTheta = 0.99;
+        public int rangeWidth = 50;
+        // 0 means closed loop: each thread issues the next operation as soon as the previous one returned
+        public long targetOpsPerSecond = 0;
+        public int durationSeconds = 30;
+        // Run before the measured duration to let threads start and the JIT compile; not recorded
+        public int warmupSeconds = 5;
+        public int reportIntervalSeconds = 5;
+
+        /**
+         * Reads the workload options, e.g. {@code threads=8 keyDistribution=uniform targetOpsPerSecond=50000};
+         * options that are not given keep their defaults.
+         */
+        public static Config parse(Options options) {
+            Config config = new Config();
+            config.threads = options.getInt("threads", config.threads);
+            config.readWeight = options.getInt("readWeight", config.readWeight);
+            config.appendWeight = options.getInt("appendWeight", config.appendWeight);
+            config.rangeWeight = options.getInt("rangeWeight", config.rangeWeight);
+            config.snapshotWeight = options.getInt("snapshotWeight", config.snapshotWeight);
+            config.keyDistribution = options.getEnum("keyDistribution", Distribution.class, config.keyDistribution);
+            config.timestampDistribution = options.getEnum("timestampDistribution", Distribution.class, config.timestampDistribution);
+            config.zipfTheta = options.getDouble("zipfTheta", config.zipfTheta);
+            config.rangeWidth = options.getInt("rangeWidth", config.rangeWidth);
+            config.targetOpsPerSecond = options.getLong("targetOpsPerSecond", config.targetOpsPerSecond);
+            config.durationSeconds = options.getInt("durationSeconds", config.durationSeconds);
+            config.warmupSeconds = options.getInt("warmupSeconds", config.warmupSeconds);
+            config.reportIntervalSeconds = options.getInt("reportIntervalSeconds", config.reportIntervalSeconds);
+            if (config.threads < 1) {
+                throw new IllegalArgumentException("threads must be positive: " + config.threads);
+            }
+            if (config.readWeight < 0 || config.appendWeight < 0 || config.rangeWeight < 0 || config.snapshotWeight < 0) {
+                throw new IllegalArgumentException("Operation weights must not be negative: " + config.readWeight + "/"
+                        + config.appendWeight + "/" + config.rangeWeight + "/" + config.snapshotWeight);
+            }
+            return config;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("threads=%d weights(read/append/range/snapshot)=%d/%d/%d/%d keys=%s timestamps=%s theta=%.2f rangeWidth=%d %s warmup=%ds duration=%ds",
+                    threads, readWeight, appendWeight, rangeWeight, snapshotWeight, keyDistribution, timestampDistribution,
+                    zipfTheta, rangeWidth, targetOpsPerSecond > 0 ? "open-loop@" + targetOpsPerSecond + "ops/s" : "closed-loop",
+                    warmupSeconds, durationSeconds);
+        }
+    }
+
+    private final MultiVersionMap<String, Payload> map;
+    private final Config config;
+    private final String[] keys;
+    // Permutation of key indexes, so the hot Zipfian ranks are spread over the key space
+    private final int[] keyOrder;
+    private final ZipfianGenerator keyZipf;
+    private ZipfianGenerator ageZipf;
+    private final AtomicLong latestVersion = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicReference<RuntimeException> firstError = new AtomicReference<>();
+    private final int totalWeight;
+    // Open-loop workers spin before an intended start only if that cannot take a CPU from another worker
+    private final boolean spinBeforeStart;
+
+    /**
+     * @param map  the map under test; it is called from several threads, wrap it in a
+     *             {@link SynchronizedMVM} unless it is thread-safe itself
+     * @param keys the key space operations are drawn from
+     */
+    public WorkloadDriver(MultiVersionMap<String, Payload> map, Collection<String> keys, Config config) {
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("The key space must not be empty");
+        }
+        this.map = map;
+        this.config = config;
+        this.keys = new TreeSet<>(keys).toArray(new String[0]);
+        this.totalWeight = config.readWeight + config.appendWeight + config.rangeWeight + config.snapshotWeight;
+        if (totalWeight <= 0) {
+            throw new IllegalArgumentException("At least one operation weight must be positive");
+        }
+
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < this.keys.length; i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order, new Random(42));
+        this.keyOrder = order.stream().mapToInt(Integer::intValue).toArray();
+        this.keyZipf = new ZipfianGenerator(this.keys.length, config.zipfTheta);
+        this.spinBeforeStart = config.threads < Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Appends the initial data set and returns the elapsed time in nanoseconds.
+     */
+    public long preload(List<Map.Entry<String, Payload>> data) {
+        long start = System.nanoTime();
+        for (Map.Entry<String, Payload> entry : data) {
+            latestVersion.set(map.append(entry.getKey(), entry.getValue()));
+        }
+        return System.nanoTime() - start;
+    }
+
+    public void run() throws InterruptedException {
+        // Zipfian read timestamps favour recent versions: the drawn rank is the age relative to the newest one
+        ageZipf = new ZipfianGenerator(Math.max(1, latestVersion.get()), config.zipfTheta);
+
+        Operation[] operations = Operation.values();
+        LatencyHistogram[][] histograms = new LatencyHistogram[config.threads][operations.length];
+        for (LatencyHistogram[] perThread : histograms) {
+            for (int i = 0; i < perThread.length; i++) {
+                perThread[i] = new LatencyHistogram();
+            }
+        }
+
+        // Start the clock only once every worker is running; [start, measure, end] are published through 'go'
+        long[] schedule = new long[3];
+        CountDownLatch ready = new CountDownLatch(config.threads);
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(config.threads);
+        for (int t = 0; t < config.threads; t++) {
+            LatencyHistogram[] perThread = histograms[t];
+            Thread worker = new Thread(() -> {
+                try {
+                    ready.countDown();
+                    go.await();
+                    runWorker(perThread, schedule[0], schedule[1], schedule[2]);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "workload-" + t);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        ready.await();
+        schedule[0] = System.nanoTime();
+        schedule[1] = schedule[0] + config.warmupSeconds * 1_000_000_000L;
+        schedule[2] = schedule[1] + config.durationSeconds * 1_000_000_000L;
+        go.countDown();
+
+        System.out.println("Workload: " + config);
+        if (config.warmupSeconds > 0) {
+            System.out.println("Warming up for " + config.warmupSeconds + "s");
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, schedule[1] - System.nanoTime()));
+        }
+        long startNanos = schedule[1];
+        long[][] previous = new long[operations.length][];
+        for (int i = 0; i < operations.length; i++) {
+            previous[i] = LatencyHistogram.empty();
+        }
+        long intervalStart = startNanos;
+        while (!done.await(config.reportIntervalSeconds, TimeUnit.SECONDS)) {
+            long now = System.nanoTime();
+            System.out.printf("--- t=%.0fs ---%n", (now - startNanos) / 1e9);
+            for (int i = 0; i < operations.length; i++) {
+                long[] current = merged(histograms, i);
+                printLine(operations[i], LatencyHistogram.minus(current, previous[i]), now - intervalStart);
+                previous[i] = current;
+            }
+            intervalStart = now;
+        }
+
+        long elapsed = System.nanoTime() - startNanos;
+        System.out.printf("%n=== Totals over %.1fs ===%n", elapsed / 1e9);
+        long totalOps = 0;
+        for (int i = 0; i < operations.length; i++) {
+            long[] total = merged(histograms, i);
+            totalOps += LatencyHistogram.count(total);
+            printLine(operations[i], total, elapsed);
+        }
+        System.out.printf("  %-8s %,12.0f ops/s%n", "ALL", totalOps / (elapsed / 1e9));
+        if (errors.get() > 0) {
+            System.out.println("  Errors: " + errors.get() + ", first: " + firstError.get());
+        }
+    }
+
+    private void runWorker(LatencyHistogram[] histograms, long startNanos, long measureNanos, long endNanos) {
+        long intervalNanos = config.targetOpsPerSecond > 0
+                ? Math.max(1, config.threads * 1_000_000_000L / config.targetOpsPerSecond)
+                : 0;
+        // Stagger the threads' schedules so they do not all fire at the same instant
+        long intended = startNanos + ThreadLocalRandom.current().nextLong(Math.max(1, intervalNanos));
+        long sequence = 0;
+
+        while (true) {
+            long begin;
+            if (intervalNanos > 0) {
+                long now;
+                while ((now = System.nanoTime()) < intended) {
+                    if (!spinBeforeStart) {
+                        LockSupport.parkNanos(intended - now);
+                    } else if (intended - now > SPIN_NANOS) {
+                        LockSupport.parkNanos(intended - now - SPIN_NANOS);
+                    } else {
+                        Thread.onSpinWait();
+                    }
+                }
+                begin = intended;
+                intended += intervalNanos;
+            } else {
+                begin = System.nanoTime();
+            }
+            if (begin >= endNanos) {
+                return;
+            }
+            Operation operation = nextOperation();
+            try {
+                execute(operation, sequence++);
+            } catch (RuntimeException e) {
+                // A failed operation has no latency worth reporting
+                errors.incrementAndGet();
+                firstError.compareAndSet(null, e);
+                continue;
+            }
+            if (begin >= measureNanos) {
+                histograms[operation.ordinal()].record(System.nanoTime() - begin);
+            }
+        }
+    }
+
+    private void execute(Operation operation, long sequence) {
+        switch (operation) {
+            case READ -> map.get(keys[nextKeyIndex()], nextTimestamp());
+            case APPEND -> {
+                String key = keys[nextKeyIndex()];
+                Payload payload = new Payload("Some Title for " + key,
+                        "Change " + sequence + " for key " + key + " by " + Thread.currentThread().getName(),
+                        String.valueOf(System.currentTimeMillis()));
+                latestVersion.accumulateAndGet(map.append(key, payload), Math::max);
+            }
+            case RANGE -> {
+                int from = nextKeyIndex();
+                int to = Math.min(keys.length - 1, from + config.rangeWidth - 1);
+                drain(map.rangeSnapshot(keys[from], true, keys[to], true, nextTimestamp()));
+            }
+            case SNAPSHOT -> drain(map.snapshot(nextTimestamp()));
+        }
+    }
+
+    private Operation nextOperation() {
+        int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+        if ((pick -= config.readWeight) < 0) {
+            return Operation.READ;
+        }
+        if ((pick -= config.appendWeight) < 0) {
+            return Operation.APPEND;
+        }
+        if (pick - config.rangeWeight < 0) {
+            return Operation.RANGE;
+        }
+        return Operation.SNAPSHOT;
+    }
+
+    private int nextKeyIndex() {
+        if (config.keyDistribution == Distribution.UNIFORM) {
+            return ThreadLocalRandom.current().nextInt(keys.length);
+        }
+        return keyOrder[(int) keyZipf.next()];
+    }
+
+    private long nextTimestamp() {
+        long latest = latestVersion.get();
+        if (config.timestampDistribution == Distribution.UNIFORM) {
+            return 1 + ThreadLocalRandom.current().nextLong(Math.max(1, latest));
+        }
+        return Math.max(1, latest - ageZipf.next());
+    }
+
+    private static void drain(Iterator<Map.Entry<String, Payload>> iterator) {
+        while (iterator.hasNext()) {
+            iterator.next();
+        }
+    }
+
+    private static long[] merged(LatencyHistogram[][] histograms, int operation) {
+        long[] total = LatencyHistogram.empty();
+        for (LatencyHistogram[] perThread : histograms) {
+            LatencyHistogram.add(total, perThread[operation].snapshot());
+        }
+        return total;
+    }
+
+    private static void printLine(Operation operation, long[] counts, long elapsedNanos) {
+        long count = LatencyHistogram.count(counts);
+        if (count == 0) {
+            return;
+        }
+        System.out.printf("  %-8s %,12.0f ops/s   p50=%,10.1f us   p99=%,10.1f us   p999=%,10.1f us%n",
+                operation, count / (elapsedNanos / 1e9),
+                LatencyHistogram.valueAtPercentile(counts, 50) / 1_000.0,
+                LatencyHistogram.valueAtPercentile(counts, 99) / 1_000.0,
+                LatencyHistogram.valueAtPercentile(counts, 99.9) / 1_000.0);
+    }
+}
@@ -3,11 +3,16 @@ package provided_classes;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 public class Test {
     public record Payload(String title, String comment, String timestamp){};
@@ -82,6 +87,201 @@ public class Test {
         }
     }
 
+    public static void runTieringTest() {
+        System.out.println("=== Running Tiering Test with test_data.csv ===\n");
+
+        // Read test data
+        List<Map.Entry<String, Payload>> data = readData("data/test_data.csv");
+        System.out.println("Loaded " + data.size() + " entries from test_data.csv\n");
+
+        long maxResidentVersions = 40;
+        for (String implName : new String[]{"BackedVLinkedList", "BackedFrugalSkiplist", "BackedAdaptiveVersionList"}) {
+            System.out.println("--- Testing tiered " + implName + " with at most " + maxResidentVersions + " resident versions ---");
+            testTieredImplementation(data, implName, maxResidentVersions);
+            System.out.println();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void testTieredImplementation(List<Map.Entry<String, Payload>> data, String implName, long maxResidentVersions) {
+        try {
+            // Create one in-memory store per map, evicted lists are written to it
+            Class<?> storeClass = Class.forName("MemoryKVStore");
+            KVStore plainStore = (KVStore) storeClass.getDeclaredConstructor().newInstance();
+            KVStore tieredStore = (KVStore) storeClass.getDeclaredConstructor().newInstance();
+
+            // Create factory and payload serializer
+            Class<?> factoryClass = Class.forName(implName + "Factory");
+            VersionListFactory<Payload> factory = (VersionListFactory<Payload>) factoryClass.getDeclaredConstructor().newInstance();
+            Serializer<Payload> serializer = (Serializer<Payload>) Class.forName("PayloadSerializer").getDeclaredConstructor().newInstance();
+
+            // Create an untiered MultiVersionMap as reference and a tiered one
+            Class<?> mvmClass = Class.forName("BackedSimpleMVM");
+            MultiVersionMap<String, Payload> plain = (MultiVersionMap<String, Payload>)
+                mvmClass.getDeclaredConstructor(VersionListFactory.class, KVStore.class).newInstance(factory, plainStore);
+            MultiVersionMap<String, Payload> tiered = (MultiVersionMap<String, Payload>)
+                mvmClass.getDeclaredConstructor(VersionListFactory.class, KVStore.class, Serializer.class, long.class)
+                    .newInstance(factory, tieredStore, serializer, maxResidentVersions);
+
+            // Insert data
+            Set<String> keys = new TreeSet<>();
+            for (Map.Entry<String, Payload> entry : data) {
+                plain.append(entry.getKey(), entry.getValue());
+                tiered.append(entry.getKey(), entry.getValue());
+                keys.add(entry.getKey());
+            }
+            System.out.println("Resident after insertion: " + mvmClass.getMethod("residentVersions").invoke(tiered)
+                + " versions of " + mvmClass.getMethod("residentKeys").invoke(tiered) + " keys");
+
+            // Snapshots first, so they read evicted lists in place, then gets, which load them back
+            int checks = 0;
+            int mismatches = 0;
+            for (long t = 0; t <= data.size() + 1; t++) {
+                mismatches += compareEntries("snapshot", t, plain.snapshot(t), tiered.snapshot(t));
+                mismatches += compareEntries("range snapshot [KEY002, KEY004)", t,
+                    plain.rangeSnapshot("KEY002", true, "KEY004", false, t), tiered.rangeSnapshot("KEY002", true, "KEY004", false, t));
+                checks += 2;
+            }
+            for (long t = 0; t <= data.size() + 1; t++) {
+                for (String key : keys) {
+                    Map.Entry<String, Payload> expected = plain.get(key, t);
+                    Map.Entry<String, Payload> actual = tiered.get(key, t);
+                    if (!String.valueOf(expected).equals(String.valueOf(actual))) {
+                        System.out.println("Mismatch for get " + key + " at timestamp " + t + ": expected " + expected + " but got " + actual);
+                        mismatches++;
+                    }
+                    checks++;
+                }
+            }
+            System.out.println("Compared " + checks + " queries with the untiered map: " + mismatches + " mismatches");
+            System.out.println("Resident after the gets: " + mvmClass.getMethod("residentVersions").invoke(tiered)
+                + " versions of " + mvmClass.getMethod("residentKeys").invoke(tiered) + " keys");
+
+            // Query range snapshot
+            System.out.println("\nRange snapshot [KEY002, KEY004] at timestamp 20:");
+            Iterator<Map.Entry<String, Payload>> snapshot = tiered.rangeSnapshot("KEY002", true, "KEY004", true, 20);
+            while (snapshot.hasNext()) {
+                Map.Entry<String, Payload> entry = snapshot.next();
+                System.out.println(entry.getKey() + "=" + entry.getValue());
+            }
+
+        } catch (Exception e) {
+            System.err.println("Error testing tiered " + implName + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static int compareEntries(String query, long timestamp, Iterator<Map.Entry<String, Payload>> expectedEntries,
+                                      Iterator<Map.Entry<String, Payload>> actualEntries) {
+        List<String> expected = new ArrayList<>();
+        expectedEntries.forEachRemaining(entry -> expected.add(entry.getKey() + "=" + entry.getValue()));
+        List<String> actual = new ArrayList<>();
+        actualEntries.forEachRemaining(entry -> actual.add(entry.getKey() + "=" + entry.getValue()));
+        if (actual.equals(expected)) {
+            return 0;
+        }
+        System.out.println("Mismatch for " + query + " at timestamp " + timestamp + ": expected " + expected + " but got " + actual);
+        return 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static void runIndexTest() {
+        System.out.println("=== Running Secondary Index Test with test_data.csv ===\n");
+
+        // Read test data
+        List<Map.Entry<String, Payload>> data = readData("data/test_data.csv");
+        System.out.println("Loaded " + data.size() + " entries from test_data.csv\n");
+
+        try {
+            // Create an in-memory store, the indexes do not touch it
+            Class<?> storeClass = Class.forName("MemoryKVStore");
+            KVStore store = (KVStore) storeClass.getDeclaredConstructor().newInstance();
+
+            // Create factory
+            Class<?> factoryClass = Class.forName("BackedVLinkedListFactory");
+            VersionListFactory<Payload> factory = (VersionListFactory<Payload>) factoryClass.getDeclaredConstructor().newInstance();
+
+            // Create MultiVersionMap with indexes on title and comment
+            Class<?> mvmClass = Class.forName("BackedSimpleMVM");
+            MultiVersionMap<String, Payload> mvm = (MultiVersionMap<String, Payload>)
+                mvmClass.getDeclaredConstructor(VersionListFactory.class, KVStore.class).newInstance(factory, store);
+            Method addIndex = mvmClass.getMethod("addIndex", String.class, Function.class);
+            addIndex.invoke(mvm, "title", (Function<Payload, String>) Payload::title);
+            addIndex.invoke(mvm, "comment", (Function<Payload, String>) Payload::comment);
+            Method indexLookup = mvmClass.getMethod("indexLookup", String.class, Comparable.class, long.class);
+            Method indexRangeScan = mvmClass.getMethod("indexRangeScan", String.class, Comparable.class, boolean.class,
+                Comparable.class, boolean.class, long.class);
+
+            // Insert data
+            Set<String> titles = new TreeSet<>();
+            Set<String> comments = new TreeSet<>();
+            for (Map.Entry<String, Payload> entry : data) {
+                mvm.append(entry.getKey(), entry.getValue());
+                titles.add(entry.getValue().title());
+                comments.add(entry.getValue().comment());
+            }
+
+            // Every lookup must return the keys of a snapshot whose visible payload has the value
+            int checks = 0;
+            int mismatches = 0;
+            for (long t = 0; t <= data.size() + 1; t++) {
+                List<Map.Entry<String, Payload>> snapshot = new ArrayList<>();
+                mvm.snapshot(t).forEachRemaining(snapshot::add);
+                for (String title : titles) {
+                    List<String> expected = filterKeys(snapshot, p -> p.title().equals(title));
+                    mismatches += compare("title=" + title, t, expected, (Iterator<String>) indexLookup.invoke(mvm, "title", title, t));
+                    checks++;
+                }
+                for (String comment : comments) {
+                    List<String> expected = filterKeys(snapshot, p -> p.comment().equals(comment));
+                    mismatches += compare("comment=" + comment, t, expected, (Iterator<String>) indexLookup.invoke(mvm, "comment", comment, t));
+                    checks++;
+                }
+                // "Change 1 ..." up to, not including, "Change 2 ..." also covers changes 10 to 19
+                List<String> expected = filterKeys(snapshot, p -> p.comment().compareTo("Change 1") >= 0 && p.comment().compareTo("Change 2") < 0);
+                mismatches += compare("comment in [Change 1, Change 2)", t, expected,
+                    (Iterator<String>) indexRangeScan.invoke(mvm, "comment", "Change 1", true, "Change 2", false, t));
+                checks++;
+            }
+            System.out.println("Compared " + checks + " index lookups with filtered snapshots: " + mismatches + " mismatches");
+
+            System.out.println("\nKeys with a comment in [Change 3, Change 4] at timestamp 20:");
+            Iterator<String> keys = (Iterator<String>) indexRangeScan.invoke(mvm, "comment", "Change 3", true, "Change 4", true, 20L);
+            while (keys.hasNext()) {
+                System.out.println(keys.next());
+            }
+
+            // Expected output (for verification):
+            // KEY001
+            // KEY002
+            // KEY004
+
+        } catch (Exception e) {
+            System.err.println("Error testing secondary indexes: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static List<String> filterKeys(List<Map.Entry<String, Payload>> snapshot, Predicate<Payload> filter) {
+        List<String> keys = new ArrayList<>();
+        for (Map.Entry<String, Payload> entry : snapshot) {
+            if (filter.test(entry.getValue())) {
+                keys.add(entry.getKey());
+            }
+        }
+        return keys;
+    }
+
+    private static int compare(String query, long timestamp, List<String> expected, Iterator<String> actualKeys) {
+        List<String> actual = new ArrayList<>();
+        actualKeys.forEachRemaining(actual::add);
+        if (actual.equals(expected)) {
+            return 0;
+        }
+        System.out.println("Mismatch for " + query + " at timestamp " + timestamp + ": expected " + expected + " but got " + actual);
+        return 1;
+    }
+
     public static void runBenchmark() {
         System.out.println("=== Running Benchmark with benchmark_data.csv ===\n");
         